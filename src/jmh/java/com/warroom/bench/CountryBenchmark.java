@@ -0,0 +1,60 @@
+package com.warroom.bench;
+
+import com.warroom.model.CountrySnapshot;
+import com.warroom.parser.Clausewitz;
+import com.warroom.transform.CountryLoader;
+import com.warroom.transform.CountryMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-country latency of the mapper, the Clausewitz path helpers and a full slice-parse-map load.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class CountryBenchmark {
+
+    private CountryLoader loader;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(CountryInput in) {
+        loader = new CountryLoader(in.data, in.index, "1939.9.1.12", in.templateNames, in.equipmentNames);
+    }
+
+    private int nextCountry(CountryInput in) {
+        next = (next + 1) % in.tags.size();
+        return next;
+    }
+
+    @Benchmark
+    public CountrySnapshot mapCountry(CountryInput in) {
+        int i = nextCountry(in);
+        return CountryMapper.from(in.tags.get(i), "1939.9.1.12", in.countries.get(i), in.templateNames, in.equipmentNames);
+    }
+
+    @Benchmark
+    public CountrySnapshot loadCountry(CountryInput in) {
+        return loader.load(in.tags.get(nextCountry(in)));
+    }
+
+    @Benchmark
+    public Optional<String> pathStr(CountryInput in) {
+        return Clausewitz.pathStr(in.countries.get(nextCountry(in)), "politics", "ruling_party");
+    }
+
+    @Benchmark
+    public Optional<Double> pathNum(CountryInput in) {
+        return Clausewitz.pathNum(in.countries.get(nextCountry(in)), "politics", "political_power");
+    }
+}
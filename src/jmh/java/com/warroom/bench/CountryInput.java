@@ -0,0 +1,45 @@
+package com.warroom.bench;
+
+import com.warroom.index.SaveIndex;
+import com.warroom.parser.ByteTokenizer;
+import com.warroom.parser.Clausewitz;
+import com.warroom.parser.ClausewitzParser;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A 1 MB save-shaped input with every country already parsed, for per-country benchmarks.
+ */
+@State(Scope.Benchmark)
+public class CountryInput {
+
+    public ByteBuffer data;
+    public SaveIndex index;
+    public List<String> tags;
+    public List<ClausewitzParser.ObjVal> countries;
+    public Map<String, String> templateNames = new HashMap<>();
+    public Map<String, String> equipmentNames = new HashMap<>();
+
+    @Setup(Level.Trial)
+    public void generate() {
+        data = ByteBuffer.wrap(SyntheticSave.generate(SyntheticSave.Shape.SAVE, 1_000_000));
+        index = SaveIndex.build(data);
+        tags = index.countryTags();
+
+        countries = new ArrayList<>();
+        for (String tag : tags) {
+            var root = new ClausewitzParser(new ByteTokenizer(SaveIndex.slice(data, index.country(tag)))).parseRoot();
+            countries.add(Clausewitz.get(root, tag).flatMap(Clausewitz::obj).orElseThrow());
+        }
+        for (int i = 1; i <= 40; i++) templateNames.put(String.valueOf(i), "Template " + i);
+        for (int i = 1; i <= 60; i++) equipmentNames.put(String.valueOf(i), "equipment_" + i);
+    }
+}
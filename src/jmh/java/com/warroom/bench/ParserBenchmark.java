@@ -0,0 +1,43 @@
+package com.warroom.bench;
+
+import com.warroom.index.SaveIndex;
+import com.warroom.parser.ByteTokenizer;
+import com.warroom.parser.ClausewitzParser;
+import com.warroom.parser.Projection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParserBenchmark {
+
+    private static final Projection HEADER = Projection.of("player", "ideology", "date");
+
+    @Benchmark
+    public ClausewitzParser.ObjVal parseRoot(SaveInput in, Megabytes mb) {
+        mb.add(in.bytes.length);
+        return new ClausewitzParser(new ByteTokenizer(in.buffer())).parseRoot();
+    }
+
+    @Benchmark
+    public ClausewitzParser.ObjVal parseCompact(SaveInput in, Megabytes mb) {
+        mb.add(in.bytes.length);
+        return new ClausewitzParser(new ByteTokenizer(in.buffer())).parseCompact();
+    }
+
+    @Benchmark
+    public ClausewitzParser.ObjVal parseHeaderProjection(SaveInput in, Megabytes mb) {
+        mb.add(in.bytes.length);
+        return new ClausewitzParser(new ByteTokenizer(in.buffer())).parseRoot(HEADER);
+    }
+
+    @Benchmark
+    public SaveIndex buildIndex(SaveInput in, Megabytes mb) {
+        mb.add(in.bytes.length);
+        return SaveIndex.build(in.buffer());
+    }
+}
@@ -0,0 +1,36 @@
+package com.warroom.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Whole-save input shared by the throughput benchmarks, generated once per trial.
+ */
+@State(Scope.Benchmark)
+public class SaveInput {
+
+    @Param({"1", "50", "200"})
+    public int sizeMb;
+
+    @Param({"SAVE", "DEEP", "WIDE"})
+    public SyntheticSave.Shape shape;
+
+    public byte[] bytes;
+    public String text;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        bytes = SyntheticSave.generate(shape, sizeMb * 1_000_000);
+        text = new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(bytes);
+    }
+}
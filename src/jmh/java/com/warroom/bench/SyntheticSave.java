@@ -0,0 +1,141 @@
+package com.warroom.bench;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic generator for save-shaped input of roughly a requested size.
+ */
+public final class SyntheticSave {
+
+    public enum Shape {
+        /** Header, definition blocks and a countries block shaped like a real save. */
+        SAVE,
+        /** Blocks nested several hundred levels deep. */
+        DEEP,
+        /** Very long anonymous number lists and runs of duplicate keys. */
+        WIDE
+    }
+
+    private static final String[] PARTIES = {"democratic", "communism", "fascism", "neutrality"};
+    private static final int TEMPLATE_COUNT = 40;
+    private static final int EQUIPMENT_COUNT = 60;
+
+    private final Random rnd = new Random(42);
+    private byte[] buf = new byte[1 << 16];
+    private int len = 0;
+
+    private SyntheticSave() {}
+
+    public static byte[] generate(Shape shape, int targetBytes) {
+        SyntheticSave g = new SyntheticSave();
+        switch (shape) {
+            case SAVE -> g.save(targetBytes);
+            case DEEP -> g.deep(targetBytes);
+            case WIDE -> g.wide(targetBytes);
+        }
+        return Arrays.copyOf(g.buf, g.len);
+    }
+
+    public static String tag(int i) {
+        return String.valueOf((char) ('A' + i / 676 % 26))
+                + (char) ('A' + i / 26 % 26)
+                + (char) ('A' + i % 26);
+    }
+
+    private void save(int targetBytes) {
+        line("HOI4txt");
+        line("player=\"GER\"");
+        line("ideology=fascism");
+        line("date=\"1939.9.1.12\"");
+
+        line("division_templates={");
+        for (int t = 1; t <= TEMPLATE_COUNT; t++) {
+            line("\tdivision_template={ id={ id=" + t + " type=52 } name=\"Template " + t + "\" }");
+        }
+        line("}");
+
+        line("equipments={");
+        for (int e = 1; e <= EQUIPMENT_COUNT; e++) {
+            line("\tequipment_" + e + "={ id={ id=" + e + " type=70 } }");
+        }
+        line("}");
+
+        line("countries={");
+        for (int c = 0; len < targetBytes; c++) {
+            country(tag(c));
+        }
+        line("}");
+    }
+
+    private void country(String tag) {
+        line("\t" + tag + "={");
+        line("\t\tpolitics={ ruling_party=" + PARTIES[rnd.nextInt(PARTIES.length)]
+                + " political_power=" + dec(rnd.nextDouble() * 500) + " }");
+        line("\t\tstability=" + dec(rnd.nextDouble()) + " war_support=" + dec(rnd.nextDouble()));
+        line("\t\tcommand_power=" + dec(rnd.nextDouble() * 200) + " research_slot=" + (2 + rnd.nextInt(5))
+                + " capital=" + rnd.nextInt(900) + " major=" + (rnd.nextInt(8) == 0 ? "yes" : "no"));
+        line("\t\tmanpower=" + rnd.nextInt(5_000_000) + " civilian_factories=" + rnd.nextInt(80)
+                + " military_factories=" + rnd.nextInt(60) + " dockyards=" + rnd.nextInt(20));
+
+        line("\t\tunits={");
+        int divisions = 20 + rnd.nextInt(200);
+        for (int d = 1; d <= divisions; d++) {
+            line("\t\t\tdivision={ id={ id=" + d + " type=58 } name=\"" + d + ". Division\""
+                    + " division_template_id={ id=" + (1 + rnd.nextInt(TEMPLATE_COUNT)) + " type=52 }"
+                    + " location=" + rnd.nextInt(13000) + " strength=" + dec(rnd.nextDouble()) + " }");
+        }
+        line("\t\t}");
+
+        line("\t\tequipment_market={ market_stockpile={ equipments={");
+        for (int e = 1; e <= EQUIPMENT_COUNT / 2; e++) {
+            line("\t\t\tequipment={ id={ id=" + (1 + rnd.nextInt(EQUIPMENT_COUNT)) + " type=70 } amount="
+                    + dec(rnd.nextDouble() * 10_000) + " }");
+        }
+        line("\t\t} } }");
+
+        append("\t\towned_states={");
+        for (int s = 0; s < 30; s++) append(" " + rnd.nextInt(1000));
+        line(" }");
+        line("\t}");
+    }
+
+    private void deep(int targetBytes) {
+        int n = 0;
+        while (len < targetBytes) {
+            append("nest" + n++ + "=");
+            for (int d = 0; d < 400; d++) append("{ level=" + d + " child=");
+            append("{ leaf=yes }");
+            for (int d = 0; d < 400; d++) append(" }");
+            line("");
+        }
+    }
+
+    private void wide(int targetBytes) {
+        int n = 0;
+        while (len < targetBytes) {
+            append("list" + n++ + "={");
+            for (int i = 0; i < 50_000 && len < targetBytes; i++) append(" " + dec(rnd.nextDouble() * 1000));
+            line(" }");
+            append("ids={");
+            for (int i = 0; i < 20_000 && len < targetBytes; i++) append(" id=" + i);
+            line(" }");
+        }
+    }
+
+    private static String dec(double v) {
+        return String.format(Locale.US, "%.3f", v);
+    }
+
+    private void line(String s) {
+        append(s);
+        append("\n");
+    }
+
+    private void append(String s) {
+        int n = s.length();
+        if (len + n > buf.length) buf = Arrays.copyOf(buf, Math.max(len + n, buf.length * 2));
+        for (int i = 0; i < n; i++) buf[len++] = (byte) s.charAt(i);
+    }
+}
@@ -0,0 +1,42 @@
+package com.warroom.bench;
+
+import com.warroom.parser.ByteTokenizer;
+import com.warroom.parser.Token;
+import com.warroom.parser.TokenSource;
+import com.warroom.parser.Tokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TokenizerBenchmark {
+
+    @Benchmark
+    public int stringTokenizer(SaveInput in, Megabytes mb) {
+        mb.add(in.bytes.length);
+        return drain(new Tokenizer(in.text));
+    }
+
+    @Benchmark
+    public int byteTokenizerInPlace(SaveInput in, Megabytes mb) {
+        mb.add(in.bytes.length);
+        return drain(new ByteTokenizer(in.buffer()));
+    }
+
+    @Benchmark
+    public int byteTokenizerStream(SaveInput in, Megabytes mb) {
+        mb.add(in.bytes.length);
+        return drain(new ByteTokenizer(new ByteArrayInputStream(in.bytes)));
+    }
+
+    private static int drain(TokenSource source) {
+        int n = 0;
+        while (source.next().type() != Token.Type.EOF) n++;
+        return n;
+    }
+}
@@ -0,0 +1,84 @@
+package com.warroom.app;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs loads on virtual threads, at most {@code maxConcurrent} at a time, where only the latest
+ * request matters. Submitting a load supersedes every earlier one: a superseded load that has
+ * not started never starts, a running one is interrupted, and its result or failure is dropped.
+ * Results are handed to the callback executor, typically the UI thread, and are checked there
+ * once more so that a result cannot overwrite a newer selection.
+ */
+final class LoadScheduler<V> implements AutoCloseable {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final Executor callbacks;
+    private final AtomicLong generation = new AtomicLong();
+    private Future<?> running;
+
+    LoadScheduler(int maxConcurrent, Executor callbacks) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.callbacks = callbacks;
+    }
+
+    /**
+     * Schedules {@code load}, superseding anything submitted before. Exactly one of the callbacks
+     * runs, on the callback executor, and only if no newer load has been submitted by then.
+     */
+    synchronized void submit(Callable<V> load, Consumer<V> onResult, Consumer<Throwable> onFailure) {
+        long gen = generation.incrementAndGet();
+        if (running != null) running.cancel(true);
+
+        running = executor.submit(() -> {
+            if (!isLatest(gen)) return;
+            try {
+                permits.acquire();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            try {
+                if (!isLatest(gen)) return;
+                V result = load.call();
+                deliver(gen, () -> onResult.accept(result));
+            } catch (Exception ex) {
+                if (!Thread.currentThread().isInterrupted()) deliver(gen, () -> onFailure.accept(ex));
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Supersedes the current load without starting another.
+     */
+    synchronized void cancel() {
+        generation.incrementAndGet();
+        if (running != null) running.cancel(true);
+        running = null;
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private boolean isLatest(long gen) {
+        return generation.get() == gen;
+    }
+
+    private void deliver(long gen, Runnable callback) {
+        if (!isLatest(gen)) return;
+        callbacks.execute(() -> {
+            if (isLatest(gen)) callback.run();
+        });
+    }
+}
@@ -1,5 +1,4 @@
 package com.warroom.app;
-import com.warroom.parser.Clausewitz;
 
 import javafx.application.Application;
 import javafx.stage.Stage;
@@ -7,26 +6,30 @@ import javafx.stage.Stage;
 import javafx.concurrent.Task;
 import javafx.stage.FileChooser;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.ZipInputStream;
-
 public class MainApp extends Application {
-    private volatile String loadedSaveText = null;
-    private volatile String loadedIdeology = null;
-    private volatile String loadedDate = null;
-    private java.util.Map<String, String> divisionTemplateNames = java.util.Map.of();
-    private java.util.Map<String, String> equipmentIdToName = java.util.Map.of();
+    private volatile LoadedSave loadedSave = null;
+    // Loader of the save that was mapped last, so selections share its pooled tokenizers.
+    private volatile SaveCountryLoader saveCountryLoader = null;
     private javafx.scene.control.TextArea logArea;
     private javafx.scene.control.Button smokeBtn;
+    private javafx.scene.control.Button cancelBtn;
+    private javafx.scene.control.ProgressBar progressBar;
+    private Task<Void> currentLoad = null;
+    // Country selections: only the latest one's result is shown, two loads at most run at once.
+    private final LoadScheduler<com.warroom.model.CountrySnapshot> countryLoads =
+            new LoadScheduler<>(2, javafx.application.Platform::runLater);
+    private javafx.scene.control.TextArea diagnosticsArea;
+    private volatile com.warroom.metrics.LoadMetrics loadMetrics = null;
+    private final com.warroom.transform.SnapshotCache snapshotCache = new com.warroom.transform.SnapshotCache(1024);
+    private final com.warroom.cache.SaveCache saveCache = com.warroom.cache.SaveCache.inUserCacheDirectory();
 
     private static final boolean DEBUG = false;
 
+    // Share of the load progress bar per stage; mapping countries ahead of selection takes the rest.
+    private static final double READ_SHARE = 0.4;
+    private static final double DEFINITIONS_SHARE = 0.1;
+    private static final int DEEP_BATCH = 32;
+
     @Override
     public void start (Stage stage) {
 
@@ -41,7 +44,13 @@ public class MainApp extends Application {
 
         var statusLabel = new javafx.scene.control.Label("No Save Loaded");
 
-        var topRow = new javafx.scene.layout.HBox(10, openBtn, smokeBtn,countryBox, statusLabel);
+        cancelBtn = new javafx.scene.control.Button("Cancel");
+        cancelBtn.setDisable(true);
+
+        progressBar = new javafx.scene.control.ProgressBar(0);
+        progressBar.setVisible(false);
+
+        var topRow = new javafx.scene.layout.HBox(10, openBtn, cancelBtn, smokeBtn, countryBox, progressBar, statusLabel);
         topRow.setPadding(new javafx.geometry.Insets(10));
 
         var overviewTable = new javafx.scene.control.TableView<OverviewRow>();
@@ -98,6 +107,7 @@ public class MainApp extends Application {
         tabs.getTabs().add(new javafx.scene.control.Tab("Stockpiles", stockpilesTable));
         tabs.getTabs().add(new javafx.scene.control.Tab("Divisions", divisionsTable));
         tabs.getTabs().add(makeTab("Wars"));
+        tabs.getTabs().add(makeDiagnosticsTab(stage));
         tabs.setTabClosingPolicy(javafx.scene.control.TabPane.TabClosingPolicy.UNAVAILABLE);
 
         logArea = new javafx.scene.control.TextArea();
@@ -107,8 +117,18 @@ public class MainApp extends Application {
 
         countryBox.setOnAction(ev -> {
             String tag = countryBox.getValue();
-            String text = loadedSaveText;
-            if (tag == null || text == null) return;
+            LoadedSave save = loadedSave;
+            if (tag == null || save == null) return;
+
+            var cached = snapshotCache.get(save.contentHash(), tag);
+            if (cached != null) {
+                countryLoads.cancel();
+                overviewTable.setItems(buildOverviewRows(cached));
+                divisionsTable.setItems(buildDivisionRows(cached));
+                stockpilesTable.setItems(buildStockpileRows(cached));
+                log("Cache hit for " + tag + " (" + snapshotCache + ")");
+                return;
+            }
 
             overviewTable.setItems(javafx.collections.FXCollections.observableArrayList(
                     new OverviewRow("Status", "Loading " + tag + "...")
@@ -122,36 +142,14 @@ public class MainApp extends Application {
                     new StockpileRow("Status", "Loading " + tag + "...")
             ));
 
-            Task<com.warroom.model.CountrySnapshot> t = new Task<>() {
-                @Override
-                protected com.warroom.model.CountrySnapshot call() {
-                    String snippet = extractSingleCountrySnippet(text, tag);
-                    if (snippet == null) return null;
-
-                    var tokens = new com.warroom.parser.Tokenizer(snippet).tokenize();
-                    var root = new com.warroom.parser.ClausewitzParser(tokens).parseRoot();
-
-                    var countryObj = Clausewitz.get(root, tag)
-                            .flatMap(Clausewitz::obj)
-                            .orElse(null);
-
-                    if (countryObj == null) return null;
-
-
-                    return com.warroom.transform.CountryMapper.from(
-                            tag,
-                            loadedDate,
-                            countryObj,
-                            divisionTemplateNames,
-                            equipmentIdToName
-
-                    );
-                }
-            };
-
-
-            t.setOnSucceeded(e2 -> {
-                var snap = t.getValue();
+            countryLoads.submit(() -> {
+                var snap = countryLoader(save).load(tag, loadMetrics);
+                snapshotCache.put(save.contentHash(), snap);
+                log("Loaded " + tag + " (" + snapshotCache + ")");
+                if (snap != null) persist(save);
+                refreshDiagnostics();
+                return snap;
+            }, snap -> {
                 if (snap == null) {
                     overviewTable.setItems(javafx.collections.FXCollections.observableArrayList(
                             new OverviewRow("Error", "Could not load data for " + tag)
@@ -161,14 +159,9 @@ public class MainApp extends Application {
                 overviewTable.setItems(buildOverviewRows(snap));
                 divisionsTable.setItems(buildDivisionRows(snap));
                 stockpilesTable.setItems(buildStockpileRows(snap));
-            });
-
-            t.setOnFailed(e2 -> overviewTable.setItems(javafx.collections.FXCollections.observableArrayList(
-                    new OverviewRow("Failed", String.valueOf(t.getException()))
+            }, ex -> overviewTable.setItems(javafx.collections.FXCollections.observableArrayList(
+                    new OverviewRow("Failed", String.valueOf(ex))
             )));
-
-
-            new Thread(t, "country-loader").start();
         });
 
         openBtn.setOnAction(e -> {
@@ -186,6 +179,18 @@ public class MainApp extends Application {
             }
             final var selectedFile = file;
 
+            var previous = currentLoad;
+            if (previous != null && previous.isRunning()) {
+                previous.cancel(true);
+                log("Cancelled loading the previous save.");
+            }
+            loadedSave = null;
+            saveCountryLoader = null;
+            countryLoads.cancel();
+            countryBox.getItems().clear();
+            countryBox.setDisable(true);
+            smokeBtn.setDisable(true);
+
             statusLabel.setText("Loading save...");
             if (DEBUG){
                 logArea.appendText("Selected: " + file.getAbsolutePath() + "\n");
@@ -193,82 +198,147 @@ public class MainApp extends Application {
             Task<Void> task = new Task<>() {
                 @Override
                 protected Void call() throws Exception {
-                    byte[] raw = Files.readAllBytes(selectedFile.toPath());
-
-                    byte[] contentBytes = raw;
-                    String compression = "none";
-
-                    if (looksLikeZip(raw)) {
-                        try {
-                            contentBytes = readAllBytesFromZip(raw);
-                            compression = "zip";
-                        } catch (Exception ignored) {
-
-                        }
-                    }
-
-                    if ("none".equals(compression) && lookslikeGZip(raw)) {
-                        try {
-                            contentBytes = readAllBytesFromGZip(raw);
-                            compression = "gzip";
-                        } catch (Exception ignored) {
-
+                    var path = selectedFile.toPath();
+                    var metrics = new com.warroom.metrics.LoadMetrics(path.toString());
+                    loadMetrics = metrics;
+                    updateMessage("Reading save...");
+                    long lookupStart = System.nanoTime();
+                    var cacheKey = com.warroom.cache.SaveCache.key(path);
+                    var lookup = saveCache.lookup(cacheKey);
+
+                    // Stage 1: country tags and header, as soon as the index has them.
+                    com.warroom.cache.SaveCache.Entry entry;
+                    LoadedSave save;
+                    if (lookup.status() == com.warroom.cache.SaveCache.Status.HIT) {
+                        entry = lookup.entry();
+                        metrics.add(com.warroom.metrics.LoadMetrics.Phase.READ, System.nanoTime() - lookupStart);
+                        save = new LoadedSave(contentOf(path, entry.compression(), metrics), cacheKey, entry);
+                        snapshotCache.putAll(entry.contentHash(), entry.snapshots());
+                        log("Reopened from cache: " + entry.index().countries().size() + " countries, "
+                                + entry.snapshots().size() + " snapshots");
+                        publishTags(entry.index().countryTags(), entry.player(), entry.date());
+                    } else {
+                        if (lookup.status() == com.warroom.cache.SaveCache.Status.STALE) {
+                            log("Cache entry is stale, rebuilding");
                         }
+                        var saveData = com.warroom.io.SaveLoader.read(path, metrics, (done, total) ->
+                                updateProgress(total > 0 ? READ_SHARE * done / total : -1, 1));
+                        var data = saveData.bytes();
+                        var index = saveData.index();
+                        var header = com.warroom.transform.SaveDefinitions.header(data, index);
+                        publishTags(index.countryTags(), header.player(), header.date());
+
+                        // Stage 2: division template and equipment names.
+                        updateMessage("Reading definitions...");
+                        long definitionsStart = System.nanoTime();
+                        var templateNames = com.warroom.transform.SaveDefinitions.divisionTemplateNames(data, index);
+                        if (isCancelled()) return null;
+                        var eqMap = com.warroom.transform.SaveDefinitions.equipmentIdToName(data, index);
+                        metrics.add(com.warroom.metrics.LoadMetrics.Phase.DEFINITIONS, System.nanoTime() - definitionsStart);
+                        if (isCancelled()) return null;
+
+                        entry = new com.warroom.cache.SaveCache.Entry(
+                                com.warroom.io.SaveLoader.contentHash(data), saveData.compression(), index,
+                                header.player(), header.ideology(), header.date(), templateNames, eqMap,
+                                java.util.Map.of());
+                        save = new LoadedSave(() -> data, cacheKey, entry);
+                        persist(save);
                     }
+                    updateProgress(READ_SHARE + DEFINITIONS_SHARE, 1);
+                    refreshDiagnostics();
 
-                    String text = readAllToString(contentBytes);
-                    var templateNames = extractDivisionTemplateNames(text);
-                    var eqMap = extractEquipmentIdToName(text);
-
-                    final String finalText = text;
-                    javafx.application.Platform.runLater(() -> loadedSaveText = finalText);
-
-                    var allTags = extractCountryTagsFromCountryBlock(text);
-                    final var finalTags = allTags;
-
-                    int limit = Math.min(text.length(), 200_000_000);
-                    String parseText = text.substring(0, limit);
-
-                    int lastClose = parseText.lastIndexOf('}');
-                    if (lastClose > 0) {
-                        parseText = parseText.substring(0, lastClose + 1);
-                    }
-
-                    var tokenizer = new com.warroom.parser.Tokenizer(parseText);
-                    var tokens = tokenizer.tokenize();
-                    var root = new com.warroom.parser.ClausewitzParser(tokens).parseRoot();
-
-                    String player = Clausewitz.get(root, "player").flatMap(Clausewitz::str).orElse(null);
-                    String saveIdeology = Clausewitz.get(root, "ideology").flatMap(Clausewitz::str).orElse(null);
-                    String date = Clausewitz.get(root, "date").flatMap(Clausewitz::str).orElse(null);
-
-                    final String finalCompression = compression;
+                    final var finalTags = entry.index().countryTags();
+                    String player = entry.player();
+                    int equipmentDefs = entry.equipmentIdToName().size();
                     javafx.application.Platform.runLater(() -> {
-                        String playerTag = player;
-                        countryBox.getItems().setAll(finalTags);
-                        countryBox.setDisable(finalTags.isEmpty());
-                        loadedIdeology = saveIdeology;
-                        loadedDate = date;
-                        divisionTemplateNames = templateNames;
-                        equipmentIdToName = eqMap;
-                        log("Loaded equipment defs: " + equipmentIdToName.size());
+                        if (isCancelled()) return;
+                        loadedSave = save;
+                        log("Loaded equipment defs: " + equipmentDefs);
                         smokeBtn.setDisable(false);
-
+                        countryBox.setDisable(finalTags.isEmpty());
                         if (!finalTags.isEmpty()) {
-                            int idx = finalTags.indexOf(playerTag);
+                            int idx = finalTags.indexOf(player);
                             if (idx >= 0) countryBox.getSelectionModel().select(idx);
                             else countryBox.getSelectionModel().selectFirst();
                         }
-                        statusLabel.setText("Loaded (" + finalCompression + ") - " + finalTags.size() + " countries");
                     });
 
-
+                    // Stage 3: map the remaining countries ahead of selection, a batch at a time.
+                    var cached = snapshotCache.snapshots(save.contentHash()).keySet();
+                    var remaining = new java.util.ArrayList<String>();
+                    if (finalTags.contains(player) && !cached.contains(player)) remaining.add(player);
+                    for (String tag : finalTags) {
+                        if (!cached.contains(tag) && !tag.equals(player)) remaining.add(tag);
+                    }
+                    int budget = Math.max(0, snapshotCache.capacity() - cached.size());
+                    if (remaining.size() > budget) remaining.subList(budget, remaining.size()).clear();
+
+                    // Created with the first batch: a save reopened with every country cached is never read.
+                    com.warroom.transform.CountryLoader loader = null;
+                    for (int i = 0; i < remaining.size(); i += DEEP_BATCH) {
+                        if (isCancelled()) return null;
+                        updateMessage("Mapping countries " + i + "/" + remaining.size() + "...");
+                        var batch = remaining.subList(i, Math.min(remaining.size(), i + DEEP_BATCH));
+                        if (loader == null) loader = countryLoader(save);
+                        var result = loader.loadAll(batch, java.util.concurrent.ForkJoinPool.commonPool(), metrics);
+                        snapshotCache.putAll(save.contentHash(), result.snapshots());
+                        updateProgress(READ_SHARE + DEFINITIONS_SHARE
+                                + (1 - READ_SHARE - DEFINITIONS_SHARE) * (i + batch.size()) / remaining.size(), 1);
+                    }
+                    if (!remaining.isEmpty()) persist(save);
+                    refreshDiagnostics();
+                    updateProgress(1, 1);
                     return null;
                 }
+
+                /**
+                 * Fills the country box as soon as the tags are known; selection stays disabled until
+                 * the definitions it needs have been read.
+                 */
+                private void publishTags(java.util.List<String> tags, String player, String date) {
+                    javafx.application.Platform.runLater(() -> {
+                        if (isCancelled()) return;
+                        countryBox.getItems().setAll(tags);
+                        log("Found " + tags.size() + " countries; player " + safe(player) + ", date " + safe(date));
+                    });
+                }
             };
+            currentLoad = task;
+
+            String fileName = file.getName();
+            progressBar.progressProperty().bind(task.progressProperty());
+            progressBar.setVisible(true);
+            cancelBtn.setDisable(false);
+            cancelBtn.setOnAction(ev -> task.cancel(true));
+
+            task.setOnSucceeded(ev -> {
+                LoadedSave save = loadedSave;
+                if (save != null) {
+                    String compression = save.cacheEntry().compression().name().toLowerCase(java.util.Locale.ROOT);
+                    String format = save.index().format().name().toLowerCase(java.util.Locale.ROOT);
+                    statusLabel.setText("Loaded (" + compression + ", " + format + ") - "
+                            + save.index().countries().size() + " countries");
+                }
+                endLoad(task);
+            });
+
+            task.setOnCancelled(ev -> {
+                if (currentLoad == task) {
+                    statusLabel.setText("Load cancelled.");
+                    countryBox.getItems().clear();
+                    countryBox.setDisable(true);
+                }
+                log("Load of " + fileName + " cancelled.");
+                endLoad(task);
+            });
+
+            task.messageProperty().addListener((obs, old, msg) -> {
+                if (currentLoad == task && msg != null && !msg.isEmpty()) statusLabel.setText(msg);
+            });
 
             task.setOnFailed(ev -> {
                 Throwable ex = task.getException();
+                endLoad(task);
                 javafx.application.Platform.runLater(() -> {
                     logArea.appendText("Load FAILED:\n");
                     if (ex != null) {
@@ -299,29 +369,128 @@ public class MainApp extends Application {
         stage.show();
     }
 
+    /**
+     * Detaches the progress bar and cancel button from {@code task}, unless a newer load owns them.
+     */
+    private void endLoad(Task<Void> task) {
+        if (currentLoad != task) return;
+        currentLoad = null;
+        progressBar.progressProperty().unbind();
+        progressBar.setVisible(false);
+        cancelBtn.setDisable(true);
+    }
+
     private javafx.scene.control.Tab makeTab(String title) {
         var label = new javafx.scene.control.Label(title + " (not loaded)");
         label.setPadding(new javafx.geometry.Insets(10));
         return new javafx.scene.control.Tab(title, label);
     }
 
+    /**
+     * Metrics of the current save, refreshed after every load, with an export to JSON.
+     */
+    private javafx.scene.control.Tab makeDiagnosticsTab(Stage stage) {
+        diagnosticsArea = new javafx.scene.control.TextArea("No save loaded.");
+        diagnosticsArea.setEditable(false);
+        diagnosticsArea.setStyle("-fx-font-family: monospace;");
+
+        var exportBtn = new javafx.scene.control.Button("Export JSON...");
+        exportBtn.setOnAction(e -> {
+            var metrics = loadMetrics;
+            if (metrics == null) {
+                log("Diagnostics: no save loaded.");
+                return;
+            }
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Export Load Metrics");
+            chooser.setInitialFileName("load-metrics.json");
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON", "*.json"));
+            var file = chooser.showSaveDialog(stage);
+            if (file == null) return;
+            try {
+                java.nio.file.Files.writeString(file.toPath(), metrics.report().toJson());
+                log("Exported load metrics to " + file);
+            } catch (java.io.IOException ex) {
+                log("Could not export load metrics: " + ex);
+            }
+        });
+
+        var refreshBtn = new javafx.scene.control.Button("Refresh");
+        refreshBtn.setOnAction(e -> refreshDiagnostics());
+
+        var buttons = new javafx.scene.layout.HBox(10, refreshBtn, exportBtn);
+        buttons.setPadding(new javafx.geometry.Insets(10));
+
+        var pane = new javafx.scene.layout.BorderPane(diagnosticsArea);
+        pane.setTop(buttons);
+        return new javafx.scene.control.Tab("Diagnostics", pane);
+    }
+
+    private void refreshDiagnostics() {
+        var metrics = loadMetrics;
+        if (metrics == null || diagnosticsArea == null) return;
+        String text = metrics.report().toString();
+        javafx.application.Platform.runLater(() -> diagnosticsArea.setText(text));
+    }
+
     private record OverviewRow(String stat, String value) {}
 
     private record DivisionRow(String template, String count) {}
 
     private record StockpileRow(String equipment, String amount) {}
 
-    private static boolean looksLikeZip(byte[] bytes){
-        return bytes.length >= 4
-                && bytes[0] == 'P' && bytes[1] == 'K'
-                && (bytes[2] == 3 || bytes[2] == 5 || bytes[2] == 7)
-                && (bytes[3] == 4 || bytes[3] == 6 || bytes[3] == 8);
+    /**
+     * An open save. Its content is only produced when a country has to be parsed, so a save
+     * reopened from the cache is not decompressed until then.
+     */
+    private record LoadedSave(java.util.function.Supplier<java.nio.ByteBuffer> content,
+                              com.warroom.cache.SaveCache.Key cacheKey,
+                              com.warroom.cache.SaveCache.Entry cacheEntry) {
+        java.nio.ByteBuffer data() {
+            return content.get();
+        }
+
+        com.warroom.index.SaveIndex index() {
+            return cacheEntry.index();
+        }
+
+        long contentHash() {
+            return cacheEntry.contentHash();
+        }
+    }
+
+    private static java.util.function.Supplier<java.nio.ByteBuffer> contentOf(
+            java.nio.file.Path path, com.warroom.io.SaveLoader.Compression compression,
+            com.warroom.metrics.LoadMetrics metrics) {
+        return new java.util.function.Supplier<>() {
+            private java.nio.ByteBuffer data;
+
+            @Override
+            public synchronized java.nio.ByteBuffer get() {
+                if (data == null) {
+                    try {
+                        data = compression == com.warroom.io.SaveLoader.Compression.NONE
+                                ? com.warroom.io.SaveLoader.map(path)
+                                : com.warroom.io.SaveLoader.read(path, metrics).bytes();
+                    } catch (java.io.IOException ex) {
+                        throw new java.io.UncheckedIOException(ex);
+                    }
+                }
+                return data;
+            }
+        };
     }
 
-    private static boolean lookslikeGZip(byte[] bytes){
-        return bytes.length >= 2
-                && (bytes[0] == (byte) 0x1F)
-                && (bytes[1] == (byte) 0x8B);
+    /**
+     * Writes the save's cache entry with every snapshot mapped so far; failures only get logged.
+     */
+    private void persist(LoadedSave save) {
+        try {
+            saveCache.store(save.cacheKey(),
+                    save.cacheEntry().withSnapshots(snapshotCache.snapshots(save.contentHash())));
+        } catch (java.io.IOException ex) {
+            log("Could not write save cache: " + ex);
+        }
     }
 
     private static String safe(String s) {
@@ -398,285 +567,12 @@ public class MainApp extends Application {
     }
 
 
-    private static String readAllToString(byte[] bytes){
-        return new String(bytes, StandardCharsets.UTF_8);
-    }
-
-    private static byte[] readAllBytesFromZip(byte[] zipBytes) throws IOException {
-        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new ByteArrayInputStream(zipBytes)))){
-            var entry = zis.getNextEntry();
-            if (entry == null) throw new IOException("ZIP had no entries");
-            return readAllBytes(zis);
-        }
-    }
-
-    private static byte[] readAllBytesFromGZip(byte[] gzBytes) throws IOException {
-        try (GZIPInputStream gis = new GZIPInputStream(new BufferedInputStream(new ByteArrayInputStream(gzBytes)))){
-            return readAllBytes(gis);
-        }
-    }
-
-    private static byte[]readAllBytes(java.io.InputStream in) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        byte[] buf = new byte[8192];
-        int read;
-        while ((read = in.read(buf)) != -1) {
-            out.write(buf, 0, read);
-        }
-        return out.toByteArray();
-    }
-
     private static String preview (String s, int maxChars) {
         if (s == null) return "";
         s  = s.replace("\u0000", "");
         return s.length() <= maxChars ? s : s.substring(0, maxChars);
     }
 
-    private static java.util.List<String> extractCountryTagsFromCountryBlock(String text) {
-        int idx = indexOfCountriesKey(text);
-        if (idx < 0) return java.util.List.of();
-
-        int eq = text.indexOf('=', idx);
-        if (eq < 0) return java.util.List.of();
-
-        int open = -1;
-        for (int k = eq + 1; k < text.length(); k++){
-            char c = text.charAt(k);
-            if (c == '{') {
-                open = k;
-                break;
-            }
-            if (!Character.isWhitespace(c)){
-                break;
-            }
-        }
-
-        if (open < 0) return java.util.List.of();
-
-        java.util.ArrayList<String> tags = new java.util.ArrayList<>();
-
-        boolean inString = false;
-        int depth = 0;
-
-        for (int i = open; i < text.length(); i++){
-            char c = text.charAt(i);
-
-            if (c == '"' && (i == 0 || text.charAt(i - 1) != '\\')) {
-                inString = !inString;
-                continue;
-            }
-            if (inString) continue;
-
-            if (c == '{') {
-                depth++;
-                continue;
-            }
-            if (c == '}') {
-                depth--;
-                if (depth == 0) break;
-                continue;
-            }
-
-            if (depth == 1 && isIdentStart(c)) {
-                int start = i;
-                int j = i;
-                while (j < text.length()){
-                    char cc = text.charAt(j);
-                    if (Character.isLetterOrDigit(cc) || cc == '_' || cc == '.' || cc == '-') j++;
-                    else break;
-                }
-                String ident = text.substring(start, j);
-
-                int k = j;
-                while (k < text.length() && Character.isWhitespace(text.charAt(k))) k++;
-
-                if (k < text.length() && text.charAt(k) == '=') {
-                    k++;
-                    while  (k < text.length() && Character.isWhitespace(text.charAt(k))) k++;
-                    if (k < text.length() && text.charAt(k) == '{') {
-                        tags.add(ident);
-                    }
-                }
-                i = j - 1;
-            }
-
-        }
-        java.util.Collections.sort(tags);
-        return tags;
-    }
-
-    private static int indexOfCountriesKey(String text) {
-        int idx = text.indexOf("\ncountries=");
-        if (idx >= 0) return idx + 1;
-
-        idx = text.indexOf("\ncountries =");
-        if (idx >= 0) return idx + 1;
-
-        idx = text.indexOf("countries=");
-        if (idx >= 0) return idx;
-
-        idx = text.indexOf("countries =");
-        if (idx >= 0) return idx;
-
-        return -1;
-    }
-
-    private static boolean isIdentStart(char c) {
-        return Character.isLetter(c) || c == '_';
-    }
-
-    private static String extractSingleCountrySnippet (String fullText, String tag) {
-        int countriesIdx = indexOfCountriesKey(fullText);
-        if (countriesIdx < 0) return null;
-
-        int eq = fullText.indexOf('=', countriesIdx);
-        if (eq < 0) return null;
-
-        int open = -1;
-        for (int k = eq + 1; k <fullText.length(); k++){
-            char c = fullText.charAt(k);
-            if (c == '{'){
-                open = k;
-                break;
-            }
-            if (!Character.isWhitespace(c)){
-                return null;
-            }
-        }
-        if (open < 0) return null;
-
-        boolean inString = false;
-        int depth = 0;
-
-        for (int i = open; i < fullText.length(); i++){
-            char c = fullText.charAt(i);
-
-            if (c == '"' && (i == 0 || fullText.charAt(i - 1) != '\\')) {
-                inString = !inString;
-                continue;
-            }
-            if (inString) continue;
-
-            if (c == '{') {
-                depth++;
-                continue;
-            }
-            if (c == '}') {
-                depth--;
-                if (depth == 0) break; continue;
-            }
-
-            if (depth == 1 && isIdentStart(c)) {
-                int startIdent = i;
-                int j = i;
-                while (j < fullText.length()){
-                    char cc = fullText.charAt(j);
-                    if (Character.isLetterOrDigit(cc) || cc == '_' || cc == '.' || cc == '-') j++;
-                    else break;
-                }
-                String ident = fullText.substring(startIdent, j);
-
-                int k = j;
-                while (k < fullText.length() && Character.isWhitespace(fullText.charAt(k))) k++;
-                if (k >= fullText.length() || fullText.charAt(k) != '=') {
-                    i = j - 1;
-                    continue;
-                }
-
-                k++;
-                while (k < fullText.length() && Character.isWhitespace(fullText.charAt(k))) k++;
-                if (k >= fullText.length() || fullText.charAt(k) != '{') {
-                    i = j - 1;
-                    continue;
-                }
-
-                if (!ident.equals(tag)) {
-                    i = j - 1;
-                    continue;
-                }
-
-                int objOpen = k;
-                int objDepth = 0;
-                boolean objInString = false;
-
-                for (int t = objOpen; t < fullText.length(); t++){
-                    char x = fullText.charAt(t);
-
-                    if (x == '"' && (t == 0 || fullText.charAt(t - 1) != '\\')) {
-                        objInString = !objInString;
-                        continue;
-                    }
-
-                    if (objInString) continue;
-
-                    if (x == '{') objDepth++;
-                    if (x == '}') {
-                        objDepth--;
-                        if (objDepth == 0) {
-                            return ident + "=" + fullText.substring(objOpen, t+1);
-                        }
-                    }
-                }
-                return null;
-            }
-        }
-        return null;
-    }
-
-    private static java.util.Map<String, String> extractDivisionTemplateNames(String fullText) {
-        String snippet = extractTopLevelKeyBlock(fullText, "division_templates");
-        if (snippet == null) return java.util.Map.of();
-
-        var tokens = new com.warroom.parser.Tokenizer(snippet).tokenize();
-        var root = new com.warroom.parser.ClausewitzParser(tokens).parseRoot();
-
-        var divTemps = Clausewitz.get(root, "division_templates")
-                .flatMap(Clausewitz::obj)
-                .orElse(null);
-        if (divTemps == null) return java.util.Map.of();
-
-
-        var v = divTemps.map().get("division_template");
-        if (v == null) return java.util.Map.of();
-
-        java.util.Map<String, String> out = new java.util.HashMap<>();
-
-        if (v instanceof com.warroom.parser.ClausewitzParser.ObjVal one) {
-            addTemplateFromObj(one, out);
-        } else if (v instanceof com.warroom.parser.ClausewitzParser.ListVal many) {
-            for (var item : many.list()) {
-                if (item instanceof com.warroom.parser.ClausewitzParser.ObjVal obj) {
-                    addTemplateFromObj(obj, out);
-                }
-            }
-        }
-        return out;
-    }
-
-    private static java.util.Map<String, String> extractEquipmentIdToName(String fullText) {
-        String snippet = extractTopLevelKeyBlock(fullText, "equipments");
-        if (snippet == null) return java.util.Map.of();
-
-        var tokens = new com.warroom.parser.Tokenizer(snippet).tokenize();
-        var root = new com.warroom.parser.ClausewitzParser(tokens).parseRoot();
-
-        var eqObj = Clausewitz.get(root, "equipments")
-                .flatMap(Clausewitz::obj)
-                .orElse(null);
-
-        if (eqObj == null) return java.util.Map.of();
-
-        java.util.Map<String, String> out = new java.util.HashMap<>();
-        for (var e : eqObj.map().entrySet()) {
-            String eqName = e.getKey();
-            if (!(e.getValue() instanceof com.warroom.parser.ClausewitzParser.ObjVal defObj)) continue;
-
-            String id = extractIdFromIdBlock(defObj.map().get("id")); // id={ id=123 type=70 }
-            if (id != null) out.put(id, eqName);
-        }
-        return out;
-    }
-
     private static javafx.collections.ObservableList<StockpileRow> buildStockpileRows(com.warroom.model.CountrySnapshot s) {
         var rows = javafx.collections.FXCollections.<StockpileRow>observableArrayList();
 
@@ -693,58 +589,9 @@ public class MainApp extends Application {
         return rows;
     }
 
-    private static void addTemplateFromObj(com.warroom.parser.ClausewitzParser.ObjVal templateObj,
-                                           java.util.Map<String, String> out) {
-        String name = Clausewitz.get(templateObj, "name").flatMap(Clausewitz::str).orElse(null);
-        String id = extractIdFromIdBlock(templateObj.map().get("id")); // id={ id=1 type=52 }
-        if (id != null && name != null) out.put(id, name);
-    }
-
-    private static String extractIdFromIdBlock(com.warroom.parser.ClausewitzParser.Value v) {
-        if (!(v instanceof com.warroom.parser.ClausewitzParser.ObjVal obj)) return null;
-        var inner = obj.map().get("id");
-        if (inner instanceof com.warroom.parser.ClausewitzParser.NumVal nv) {
-            return String.format(java.util.Locale.US, "%.0f", nv.v());
-        }
-        return null;
-    }
-
-    private static String extractTopLevelKeyBlock(String fullText, String key) {
-        int idx = fullText.indexOf("\n" + key + "=");
-        if (idx < 0) idx = fullText.indexOf(key + "=");
-        if (idx < 0) return null;
-
-        int eq = fullText.indexOf('=', idx);
-        if (eq < 0) return null;
-
-        int open = -1;
-        for (int i = eq + 1; i < fullText.length(); i++) {
-            char c = fullText.charAt(i);
-            if (c == '{') { open = i; break; }
-            if (!Character.isWhitespace(c)) return null;
-        }
-        if (open < 0) return null;
-
-        boolean inString = false;
-        int depth = 0;
-        for (int i = open; i < fullText.length(); i++) {
-            char c = fullText.charAt(i);
-            if (c == '"' && (i == 0 || fullText.charAt(i - 1) != '\\')) inString = !inString;
-            if (inString) continue;
-
-            if (c == '{') depth++;
-            else if (c == '}') {
-                depth--;
-                if (depth == 0) {
-                    return key + "=" + fullText.substring(open, i + 1);
-                }
-            }
-        }
-        return null;
-    }
-
     private void runSmokeTest(javafx.scene.control.ComboBox<String> countryBox) {
-        if (loadedSaveText == null || loadedSaveText.isBlank()) {
+        LoadedSave save = loadedSave;
+        if (save == null) {
             log("Smoke test: no save loaded.");
             return;
         }
@@ -761,60 +608,14 @@ public class MainApp extends Application {
         javafx.concurrent.Task<Void> task = new javafx.concurrent.Task<>() {
             @Override
             protected Void call() {
-                long start = System.currentTimeMillis();
-                int ok = 0;
-                int fail = 0;
-                java.util.List<String> failures = new java.util.ArrayList<>();
-
-                for (int i = 0; i < tags.size(); i++) {
-                    String tag = tags.get(i);
-                    updateMessage("Testing " + tag + " (" + (i + 1) + "/" + tags.size() + ")");
-
-                    try {
-                        String snippet = extractSingleCountrySnippet(loadedSaveText, tag);
-                        if (snippet == null) {
-                            fail++;
-                            failures.add(tag + " — snippet not found");
-                            continue;
-                        }
-
-                        var tokens = new com.warroom.parser.Tokenizer(snippet).tokenize();
-                        var root = new com.warroom.parser.ClausewitzParser(tokens).parseRoot();
-
-                        var countryObj = com.warroom.parser.Clausewitz.get(root, tag)
-                                .flatMap(com.warroom.parser.Clausewitz::obj)
-                                .orElse(null);
-
-                        if (countryObj == null) {
-                            fail++;
-                            failures.add(tag + " — parsed but tag object missing");
-                            continue;
-                        }
-
-
-                        var snap = com.warroom.transform.CountryMapper.from(
-                                tag,
-                                loadedDate,
-                                countryObj,
-                                divisionTemplateNames,
-                                equipmentIdToName
-                        );
-
-                        if (snap == null || snap.tag() == null) {
-                            fail++;
-                            failures.add(tag + " — mapper returned null/invalid snapshot");
-                            continue;
-                        }
-
-                        ok++;
-                    } catch (Exception ex) {
-                        fail++;
-                        failures.add(tag + " — " + ex.getClass().getSimpleName() + ": " + ex.getMessage());
-                    }
-                }
-
-                int okFinal = ok;
-                int failFinal = fail;
+                updateMessage("Testing " + tags.size() + " countries");
+                var result = countryLoader(save).loadAll(tags, java.util.concurrent.ForkJoinPool.commonPool(), loadMetrics);
+                snapshotCache.putAll(save.contentHash(), result.snapshots());
+                persist(save);
+                refreshDiagnostics();
+                var failures = result.failures();
+                int okFinal = result.snapshots().size();
+                int failFinal = failures.size();
 
                 javafx.application.Platform.runLater(() -> {
                     if (!failures.isEmpty()) {
@@ -823,8 +624,7 @@ public class MainApp extends Application {
                             log("  " + failures.get(i));
                         }
                     }
-                    long ms = System.currentTimeMillis() - start;
-                    log("Smoke test complete. OK=" + okFinal + " FAIL=" + failFinal + " (" + ms + "ms)");
+                    log("Smoke test complete. OK=" + okFinal + " FAIL=" + failFinal + " (" + result.timings() + ")");
 
                     smokeBtn.setDisable(false);
 
@@ -837,11 +637,39 @@ public class MainApp extends Application {
         new Thread(task, "smoke-test").start();
     }
 
+    private record SaveCountryLoader(LoadedSave save, com.warroom.transform.CountryLoader loader) {}
+
+    /**
+     * The country loader of {@code save}, created on first use. Two threads racing for a new save
+     * may each build one; both are equivalent, and the last one is kept.
+     */
+    private com.warroom.transform.CountryLoader countryLoader(LoadedSave save) {
+        SaveCountryLoader current = saveCountryLoader;
+        if (current != null && current.save() == save) return current.loader();
+
+        var loader = new com.warroom.transform.CountryLoader(
+                save.data(),
+                save.index(),
+                save.cacheEntry().date(),
+                save.cacheEntry().divisionTemplateNames(),
+                save.cacheEntry().equipmentIdToName()
+        );
+        saveCountryLoader = new SaveCountryLoader(save, loader);
+        return loader;
+    }
+
     private void log(String msg) {
         if (logArea == null) return;
         javafx.application.Platform.runLater(() -> logArea.appendText(msg + "\n"));
     }
 
+    @Override
+    public void stop() {
+        countryLoads.close();
+        var load = currentLoad;
+        if (load != null) load.cancel(true);
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,347 @@
+package com.warroom.cache;
+
+import com.warroom.index.SaveIndex;
+import com.warroom.io.SaveLoader;
+import com.warroom.model.CountrySnapshot;
+import com.warroom.model.EquipmentAmount;
+import com.warroom.parser.SaveFormat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * On-disk cache of everything opening a save produces: the structural index, the header values,
+ * the template and equipment maps and whichever countries have been mapped so far. Reopening
+ * a cached save then costs a hash of the file and one small read instead of a full
+ * decompress and parse.
+ *
+ * <p>There is one binary file per save path. It records the save's size, modification time and
+ * CRC-32C, and an entry whose file no longer matches all three is reported as stale and
+ * overwritten by the next {@link #store}. Unreadable or foreign files are treated the same way.
+ */
+public final class SaveCache {
+
+    private static final int MAGIC = 0x57524331; // "WRC1"
+    private static final int FORMAT_VERSION = 2;
+    private static final String APP_DIR = "hoi4-war-room";
+    private static final int HASH_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Identity of a save file on disk; {@code fileHash} covers the raw, possibly compressed bytes.
+     */
+    public record Key(Path file, long size, long modified, long fileHash) {}
+
+    /**
+     * @param contentHash {@link SaveLoader#contentHash} of the decompressed save
+     * @param snapshots   mapped countries by tag; may cover only some of the index's countries
+     */
+    public record Entry(long contentHash,
+                        SaveLoader.Compression compression,
+                        SaveIndex index,
+                        String player,
+                        String ideology,
+                        String date,
+                        Map<String, String> divisionTemplateNames,
+                        Map<String, String> equipmentIdToName,
+                        Map<String, CountrySnapshot> snapshots) {
+
+        public Entry withSnapshots(Map<String, CountrySnapshot> snapshots) {
+            return new Entry(contentHash, compression, index, player, ideology, date,
+                    divisionTemplateNames, equipmentIdToName, snapshots);
+        }
+    }
+
+    /**
+     * What {@link #lookup} found.
+     */
+    public enum Status { HIT, MISSING, STALE }
+
+    public record Lookup(Status status, Entry entry) {}
+
+    private final Path directory;
+
+    public SaveCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * A cache in the platform's per-user cache directory.
+     */
+    public static SaveCache inUserCacheDirectory() {
+        return new SaveCache(userCacheDirectory());
+    }
+
+    public static Path userCacheDirectory() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        Path home = Path.of(System.getProperty("user.home"));
+
+        if (os.contains("win")) {
+            String local = System.getenv("LOCALAPPDATA");
+            Path base = local != null ? Path.of(local) : home.resolve("AppData").resolve("Local");
+            return base.resolve(APP_DIR).resolve("cache");
+        }
+        if (os.contains("mac")) {
+            return home.resolve("Library").resolve("Caches").resolve(APP_DIR);
+        }
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        Path base = xdg != null && !xdg.isBlank() ? Path.of(xdg) : home.resolve(".cache");
+        return base.resolve(APP_DIR);
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Stats and hashes the file. The hash is {@link SaveLoader#contentHash} of the file's bytes.
+     */
+    public static Key key(Path file) throws IOException {
+        Path abs = file.toAbsolutePath().normalize();
+        long size = Files.size(abs);
+        long modified = Files.getLastModifiedTime(abs).toMillis();
+        return new Key(abs, size, modified, fileHash(abs));
+    }
+
+    /**
+     * Reads the file with plain channel reads rather than a mapping: a mapping stays open until it
+     * is garbage collected, and on Windows that keeps the game from overwriting its autosave.
+     */
+    private static long fileHash(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buf = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+        long length = 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (ch.read(buf) >= 0) {
+                buf.flip();
+                length += buf.remaining();
+                crc.update(buf);
+                buf.clear();
+            }
+        }
+        return (crc.getValue() << 32) | (length & 0xFFFF_FFFFL);
+    }
+
+    public Lookup lookup(Key key) {
+        Path path = entryPath(key.file());
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return new Lookup(Status.STALE, null);
+            if (in.readLong() != key.size() || in.readLong() != key.modified() || in.readLong() != key.fileHash()) {
+                return new Lookup(Status.STALE, null);
+            }
+            return new Lookup(Status.HIT, readEntry(in));
+        } catch (NoSuchFileException ex) {
+            return new Lookup(Status.MISSING, null);
+        } catch (IOException | RuntimeException ex) {
+            return new Lookup(Status.STALE, null);
+        }
+    }
+
+    /**
+     * Writes the entry to a temporary file and moves it into place, so a reader never sees a
+     * partial entry. Concurrent stores for the same save are serialised; the last one wins.
+     */
+    public synchronized void store(Key key, Entry entry) throws IOException {
+        Files.createDirectories(directory);
+        Path target = entryPath(key.file());
+        Path tmp = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(key.size());
+                out.writeLong(key.modified());
+                out.writeLong(key.fileHash());
+                writeEntry(out, entry);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path entryPath(Path file) {
+        CRC32C crc = new CRC32C();
+        byte[] name = file.toString().getBytes(StandardCharsets.UTF_8);
+        crc.update(name);
+        String fileName = file.getFileName() == null ? "save" : file.getFileName().toString();
+        String safe = fileName.replaceAll("[^A-Za-z0-9._-]", "_");
+        return directory.resolve(String.format(Locale.ROOT, "%s-%08x-%d.bin", safe, crc.getValue(), name.length));
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry e) throws IOException {
+        out.writeLong(e.contentHash());
+        out.writeByte(e.compression().ordinal());
+        writeNullable(out, e.player());
+        writeNullable(out, e.ideology());
+        writeNullable(out, e.date());
+
+        out.writeByte(e.index().format().ordinal());
+        out.writeInt(e.index().contentStart());
+        writeBlocks(out, e.index().topLevel());
+        writeBlocks(out, e.index().countries());
+        writeStringMap(out, e.divisionTemplateNames());
+        writeStringMap(out, e.equipmentIdToName());
+
+        out.writeInt(e.snapshots().size());
+        for (CountrySnapshot s : e.snapshots().values()) writeSnapshot(out, s);
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        long contentHash = in.readLong();
+        SaveLoader.Compression compression = SaveLoader.Compression.values()[in.readByte()];
+        String player = readNullable(in);
+        String ideology = readNullable(in);
+        String date = readNullable(in);
+
+        SaveFormat format = SaveFormat.values()[in.readByte()];
+        int contentStart = in.readInt();
+        Map<String, SaveIndex.Block> topLevel = readBlocks(in);
+        Map<String, SaveIndex.Block> countries = readBlocks(in);
+        Map<String, String> templates = readStringMap(in);
+        Map<String, String> equipment = readStringMap(in);
+
+        int n = in.readInt();
+        Map<String, CountrySnapshot> snapshots = new TreeMap<>();
+        for (int i = 0; i < n; i++) {
+            CountrySnapshot s = readSnapshot(in);
+            snapshots.put(s.tag(), s);
+        }
+
+        return new Entry(contentHash, compression, SaveIndex.of(format, contentStart, topLevel, countries),
+                player, ideology, date, templates, equipment, Collections.unmodifiableMap(snapshots));
+    }
+
+    private static void writeBlocks(DataOutputStream out, Map<String, SaveIndex.Block> blocks) throws IOException {
+        out.writeInt(blocks.size());
+        for (SaveIndex.Block b : blocks.values()) {
+            out.writeUTF(b.key());
+            out.writeInt(b.start());
+            out.writeInt(b.open() - b.start());
+            out.writeInt(b.end() - b.start());
+        }
+    }
+
+    private static Map<String, SaveIndex.Block> readBlocks(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        Map<String, SaveIndex.Block> blocks = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            String key = in.readUTF();
+            int start = in.readInt();
+            int open = start + in.readInt();
+            int end = start + in.readInt();
+            blocks.put(key, new SaveIndex.Block(key, start, open, end));
+        }
+        return blocks;
+    }
+
+    private static void writeStringMap(DataOutputStream out, Map<String, String> map) throws IOException {
+        out.writeInt(map.size());
+        for (var e : map.entrySet()) {
+            out.writeUTF(e.getKey());
+            writeNullable(out, e.getValue());
+        }
+    }
+
+    private static Map<String, String> readStringMap(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < n; i++) map.put(in.readUTF(), readNullable(in));
+        return map;
+    }
+
+    private static void writeSnapshot(DataOutputStream out, CountrySnapshot s) throws IOException {
+        out.writeUTF(s.tag());
+        writeNullable(out, s.saveDate());
+        writeNullable(out, s.ideology());
+        writeNullable(out, s.rulingParty());
+        for (Double d : new Double[] {
+                s.manpower(), s.civilianFactories(), s.militaryFactories(), s.dockyards(),
+                s.politicalPower(), s.stability(), s.warSupport(), s.commandPower(),
+                s.researchSlots(), s.capitalStateId()}) {
+            writeNullable(out, d);
+        }
+        out.writeByte(s.major() == null ? -1 : s.major() ? 1 : 0);
+
+        Map<String, Integer> divisions = s.divisionsByTemplate() == null ? Map.of() : s.divisionsByTemplate();
+        out.writeInt(divisions.size());
+        for (var e : divisions.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeInt(e.getValue());
+        }
+
+        List<EquipmentAmount> stockpiles = s.stockpilesTop10() == null ? List.of() : s.stockpilesTop10();
+        out.writeInt(stockpiles.size());
+        for (EquipmentAmount a : stockpiles) {
+            writeNullable(out, a.equipment());
+            writeNullable(out, a.amount());
+        }
+    }
+
+    private static CountrySnapshot readSnapshot(DataInputStream in) throws IOException {
+        String tag = in.readUTF();
+        String saveDate = readNullable(in);
+        String ideology = readNullable(in);
+        String rulingParty = readNullable(in);
+        Double[] d = new Double[10];
+        for (int i = 0; i < d.length; i++) d[i] = readNullableDouble(in);
+        byte major = in.readByte();
+
+        int divisionCount = in.readInt();
+        Map<String, Integer> divisions = new LinkedHashMap<>();
+        for (int i = 0; i < divisionCount; i++) divisions.put(in.readUTF(), in.readInt());
+
+        int stockpileCount = in.readInt();
+        List<EquipmentAmount> stockpiles = new ArrayList<>(stockpileCount);
+        for (int i = 0; i < stockpileCount; i++) {
+            stockpiles.add(new EquipmentAmount(readNullable(in), readNullableDouble(in)));
+        }
+
+        return new CountrySnapshot(tag, saveDate, ideology, rulingParty,
+                d[0], d[1], d[2], d[3], d[4], d[5], d[6], d[7], d[8], d[9],
+                major < 0 ? null : major == 1,
+                divisions, stockpiles);
+    }
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, Double d) throws IOException {
+        out.writeBoolean(d != null);
+        if (d != null) out.writeDouble(d);
+    }
+
+    private static Double readNullableDouble(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+}
@@ -0,0 +1,357 @@
+package com.warroom.cli;
+
+import com.warroom.io.SaveLoader;
+import com.warroom.timeline.CampaignTimeline;
+import com.warroom.timeline.GameDate;
+import com.warroom.timeline.Metric;
+import com.warroom.timeline.TimelineStore;
+import com.warroom.transform.CountryLoader;
+import com.warroom.transform.SaveDefinitions;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless entry point: maps every country of every given save and writes the snapshots as JSON
+ * Lines or CSV. Saves are processed concurrently, at most {@code --parallelism} at a time, which
+ * also bounds how many decompressed saves are held in memory. Countries within a save share one
+ * fork-join pool. Output records of one save are contiguous, but saves appear in completion order.
+ *
+ * <p>The {@code timeline} subcommand instead brings a campaign folder's {@link CampaignTimeline}
+ * up to date and prints one metric of one country over the campaign.
+ */
+public final class BatchMain {
+
+    private static final String USAGE = """
+            Usage: war-room-batch [options] <save | directory | glob>...
+                   war-room-batch timeline <folder> <tag> <metric> [from [to]]
+
+              -f, --format jsonl|csv   output format (default: jsonl)
+              -o, --output FILE        write to FILE instead of standard output
+              -j, --parallelism N      saves processed at the same time (default: %d)
+
+            Directories are searched recursively for *.hoi4 files. Globs such as
+            'saves/**/*.hoi4' are expanded here, so quote them to keep the shell out;
+            ** also matches no directory at all, so that one includes saves/*.hoi4.
+            Binary (ironman) saves need a token table: set WARROOM_TOKENS to its path.
+            Progress and failures go to standard error. The exit status is 1 if any
+            save could not be processed.
+
+            timeline ingests the saves of <folder> not seen before into its timeline
+            store, then prints "date<TAB>value" for every save that has <metric> for
+            <tag>, optionally only between the in-game dates from and to (e.g. 1939.9.1).
+            Metrics: %s
+            """;
+
+    private enum Format { JSONL, CSV }
+
+    private record Options(Format format, Path output, int parallelism, List<String> inputs) {}
+
+    private BatchMain() {}
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("timeline")) {
+            timelineMain(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        Options options;
+        try {
+            options = parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage(System.err);
+            System.exit(2);
+            return;
+        }
+        if (options == null) {
+            printUsage(System.out);
+            return;
+        }
+
+        try {
+            System.exit(run(options));
+        } catch (IOException ex) {
+            System.err.println("error: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static int run(Options options) throws IOException {
+        List<Path> saves = expand(options.inputs());
+        if (saves.isEmpty()) {
+            System.err.println("No saves found.");
+            return 1;
+        }
+        System.err.printf(Locale.US, "Processing %d saves, %d at a time%n", saves.size(), options.parallelism());
+
+        Writer out = options.output() == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedWriter(options.output(), StandardCharsets.UTF_8);
+        SnapshotWriter writer = options.format() == Format.CSV
+                ? SnapshotWriter.csv(out)
+                : SnapshotWriter.jsonLines(out);
+
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failedSaves = new AtomicInteger();
+        AtomicInteger countries = new AtomicInteger();
+        long start = System.nanoTime();
+
+        ForkJoinPool countryPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        ExecutorService saveExecutor = Executors.newFixedThreadPool(options.parallelism(), r -> {
+            Thread t = new Thread(r, "batch-save");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            for (Path save : saves) {
+                saveExecutor.execute(() -> {
+                    long t0 = System.nanoTime();
+                    String status;
+                    try {
+                        CountryLoader.Result result = process(save, countryPool);
+                        synchronized (writer) {
+                            for (var snap : result.snapshots().values()) writer.write(save.toString(), snap);
+                            writer.flush();
+                        }
+                        countries.addAndGet(result.snapshots().size());
+                        status = result.snapshots().size() + " countries"
+                                + (result.failures().isEmpty() ? "" : ", " + result.failures().size() + " failed");
+                    } catch (IOException | RuntimeException ex) {
+                        failedSaves.incrementAndGet();
+                        status = "FAILED " + ex;
+                    } catch (OutOfMemoryError ex) {
+                        failedSaves.incrementAndGet();
+                        status = "FAILED out of memory; lower --parallelism or raise -Xmx";
+                    }
+                    System.err.printf(Locale.US, "[%d/%d] %s: %s (%d ms)%n", done.incrementAndGet(), saves.size(),
+                            save, status, (System.nanoTime() - t0) / 1_000_000);
+                });
+            }
+        } finally {
+            saveExecutor.close();
+            countryPool.close();
+            writer.close();
+        }
+
+        System.err.printf(Locale.US, "Done: %d saves, %d countries, %d failed saves in %d ms%n",
+                saves.size(), countries.get(), failedSaves.get(), (System.nanoTime() - start) / 1_000_000);
+        return failedSaves.get() == 0 ? 0 : 1;
+    }
+
+    private static void timelineMain(String[] args) {
+        if (args.length == 1 && (args[0].equals("-h") || args[0].equals("--help"))) {
+            printUsage(System.out);
+            return;
+        }
+        Path folder;
+        String tag;
+        Metric metric;
+        GameDate from;
+        GameDate to;
+        try {
+            if (args.length < 3 || args.length > 5) throw new IllegalArgumentException("Expected <folder> <tag> <metric> [from [to]].");
+            folder = Path.of(args[0]);
+            tag = args[1].toUpperCase(Locale.ROOT);
+            metric = metric(args[2]);
+            from = args.length > 3 ? GameDate.parse(args[3]) : null;
+            to = args.length > 4 ? GameDate.parse(args[4]) : null;
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage(System.err);
+            System.exit(2);
+            return;
+        }
+        if (!Files.isDirectory(folder)) {
+            System.err.println("error: Not a directory: " + folder);
+            System.exit(1);
+            return;
+        }
+
+        try {
+            System.exit(timeline(folder, tag, metric, from, to));
+        } catch (IOException ex) {
+            System.err.println("error: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static int timeline(Path folder, String tag, Metric metric, GameDate from, GameDate to) throws IOException {
+        try (CampaignTimeline timeline = CampaignTimeline.open(folder)) {
+            CampaignTimeline.RefreshResult refresh = timeline.refresh();
+            for (String failure : refresh.failures()) System.err.println("FAILED " + failure);
+            System.err.printf(Locale.US, "Timeline %s: %s%n", timeline.store().directory(), refresh);
+
+            PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+            for (TimelineStore.Sample sample : timeline.series(tag, metric, from, to)) {
+                out.printf(Locale.US, "%s\t%s%n", sample.date(), sample.value());
+            }
+            out.flush();
+            return refresh.failures().isEmpty() ? 0 : 1;
+        }
+    }
+
+    private static CountryLoader.Result process(Path save, ForkJoinPool countryPool) throws IOException {
+        var saveData = SaveLoader.read(save);
+        var data = saveData.bytes();
+        var index = saveData.index();
+
+        var loader = new CountryLoader(data, index,
+                SaveDefinitions.header(data, index).date(),
+                SaveDefinitions.divisionTemplateNames(data, index),
+                SaveDefinitions.equipmentIdToName(data, index));
+        return loader.loadAll(index.countryTags(), countryPool);
+    }
+
+    /**
+     * Files, directories (searched for *.hoi4) and globs, resolved to a sorted, duplicate-free list.
+     */
+    private static List<Path> expand(List<String> inputs) throws IOException {
+        Set<Path> out = new TreeSet<>();
+        for (String input : inputs) {
+            Path base = globBase(input);
+            if (base != null) {
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + zeroOrMoreDirectories(input));
+                if (Files.isDirectory(base)) {
+                    try (Stream<Path> files = Files.walk(base)) {
+                        files.filter(Files::isRegularFile).filter(matcher::matches).forEach(out::add);
+                    }
+                }
+                continue;
+            }
+
+            Path path = Path.of(input);
+            if (Files.isRegularFile(path)) {
+                out.add(path);
+            } else if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    files.filter(Files::isRegularFile)
+                            .filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".hoi4"))
+                            .forEach(out::add);
+                }
+            } else {
+                throw new IOException("No such file or directory: " + input);
+            }
+        }
+        return new ArrayList<>(out);
+    }
+
+    /**
+     * Java globs need a literal separator after a {@code **} segment, so a recursive glob would miss
+     * the files directly in its base directory. Rewrites each such segment to also match no
+     * directory at all, unless the glob already has groups, which cannot nest.
+     */
+    private static String zeroOrMoreDirectories(String glob) {
+        return glob.indexOf('{') < 0 ? glob.replace("**/", "{**/,}") : glob;
+    }
+
+    /**
+     * Directory to walk for a glob: everything before the first segment with a glob character,
+     * or null if {@code input} is not a glob.
+     */
+    private static Path globBase(String input) {
+        int meta = -1;
+        for (int i = 0; i < input.length(); i++) {
+            if ("*?[{".indexOf(input.charAt(i)) >= 0) {
+                meta = i;
+                break;
+            }
+        }
+        if (meta < 0) return null;
+
+        String separators = "/" + (FileSystems.getDefault().getSeparator().equals("\\") ? "\\" : "");
+        int cut = -1;
+        for (int i = meta - 1; i >= 0; i--) {
+            if (separators.indexOf(input.charAt(i)) >= 0) {
+                cut = i;
+                break;
+            }
+        }
+        if (cut < 0) return Path.of("");
+        return Path.of(cut == 0 ? input.substring(0, 1) : input.substring(0, cut));
+    }
+
+    private static Options parse(String[] args) {
+        Format format = Format.JSONL;
+        Path output = null;
+        int parallelism = defaultParallelism();
+        List<String> inputs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h", "--help" -> {
+                    return null;
+                }
+                case "-f", "--format" -> {
+                    String value = value(args, ++i, arg).toUpperCase(Locale.ROOT);
+                    try {
+                        format = Format.valueOf(value);
+                    } catch (IllegalArgumentException ex) {
+                        throw new IllegalArgumentException("Unknown format: " + value.toLowerCase(Locale.ROOT));
+                    }
+                }
+                case "-o", "--output" -> output = Path.of(value(args, ++i, arg));
+                case "-j", "--parallelism" -> {
+                    String value = value(args, ++i, arg);
+                    try {
+                        parallelism = Integer.parseInt(value);
+                    } catch (NumberFormatException ex) {
+                        parallelism = 0;
+                    }
+                    if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be a positive number: " + value);
+                }
+                default -> {
+                    if (arg.startsWith("-") && arg.length() > 1) throw new IllegalArgumentException("Unknown option: " + arg);
+                    inputs.add(arg);
+                }
+            }
+        }
+
+        if (inputs.isEmpty()) throw new IllegalArgumentException("No saves given.");
+        return new Options(format, output, parallelism, inputs);
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+        return args[i];
+    }
+
+    private static Metric metric(String name) {
+        try {
+            return Metric.valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown metric: " + name);
+        }
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.printf(USAGE, defaultParallelism(),
+                Arrays.stream(Metric.values()).map(m -> m.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(", ")));
+    }
+
+    private static int defaultParallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+}
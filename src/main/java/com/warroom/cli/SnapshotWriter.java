@@ -0,0 +1,265 @@
+package com.warroom.cli;
+
+import com.warroom.model.CountrySnapshot;
+import com.warroom.model.EquipmentAmount;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes one record per country snapshot, tagged with the save it came from. Implementations are
+ * not thread-safe.
+ */
+interface SnapshotWriter extends Closeable {
+
+    void write(String save, CountrySnapshot s) throws IOException;
+
+    void flush() throws IOException;
+
+    static SnapshotWriter jsonLines(Writer out) {
+        return new JsonLines(out);
+    }
+
+    static SnapshotWriter csv(Writer out) {
+        return new Csv(out);
+    }
+
+    /**
+     * One JSON object per line, with the division and stockpile breakdowns kept as nested values.
+     */
+    final class JsonLines implements SnapshotWriter {
+        private final Writer out;
+        private final StringBuilder sb = new StringBuilder(1024);
+
+        JsonLines(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(String save, CountrySnapshot s) throws IOException {
+            sb.setLength(0);
+            sb.append('{');
+            field("save").string(save);
+            sb.append(',');
+            field("tag").string(s.tag());
+            sb.append(',');
+            field("saveDate").string(s.saveDate());
+            sb.append(',');
+            field("ideology").string(s.ideology());
+            sb.append(',');
+            field("rulingParty").string(s.rulingParty());
+            sb.append(',');
+            field("manpower").number(s.manpower());
+            sb.append(',');
+            field("civilianFactories").number(s.civilianFactories());
+            sb.append(',');
+            field("militaryFactories").number(s.militaryFactories());
+            sb.append(',');
+            field("dockyards").number(s.dockyards());
+            sb.append(',');
+            field("politicalPower").number(s.politicalPower());
+            sb.append(',');
+            field("stability").number(s.stability());
+            sb.append(',');
+            field("warSupport").number(s.warSupport());
+            sb.append(',');
+            field("commandPower").number(s.commandPower());
+            sb.append(',');
+            field("researchSlots").number(s.researchSlots());
+            sb.append(',');
+            field("capitalStateId").number(s.capitalStateId());
+            sb.append(',');
+            field("major");
+            sb.append(s.major() == null ? "null" : s.major().toString());
+
+            sb.append(',');
+            field("divisionsByTemplate");
+            sb.append('{');
+            if (s.divisionsByTemplate() != null) {
+                boolean first = true;
+                for (var e : s.divisionsByTemplate().entrySet()) {
+                    if (!first) sb.append(',');
+                    first = false;
+                    field(e.getKey());
+                    sb.append(e.getValue());
+                }
+            }
+            sb.append('}');
+
+            sb.append(',');
+            field("stockpilesTop10");
+            sb.append('[');
+            if (s.stockpilesTop10() != null) {
+                boolean first = true;
+                for (EquipmentAmount a : s.stockpilesTop10()) {
+                    if (!first) sb.append(',');
+                    first = false;
+                    sb.append('{');
+                    field("equipment").string(a.equipment());
+                    sb.append(',');
+                    field("amount").number(a.amount());
+                    sb.append('}');
+                }
+            }
+            sb.append(']');
+
+            sb.append("}\n");
+            out.append(sb);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private JsonLines field(String name) {
+            string(name);
+            sb.append(':');
+            return this;
+        }
+
+        private void string(String s) {
+            if (s == null) {
+                sb.append("null");
+                return;
+            }
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> sb.append("\\\"");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> {
+                        if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                        else sb.append(c);
+                    }
+                }
+            }
+            sb.append('"');
+        }
+
+        private void number(Double d) {
+            if (d == null || d.isNaN() || d.isInfinite()) sb.append("null");
+            else appendNumber(sb, d);
+        }
+    }
+
+    /**
+     * Flat rows with a header line. Division and stockpile breakdowns are packed into single
+     * {@code name=value;...} cells; names are player-chosen, so a backslash, {@code ;} or {@code =}
+     * in one is escaped with a backslash.
+     */
+    final class Csv implements SnapshotWriter {
+        private static final List<String> COLUMNS = List.of(
+                "save", "tag", "save_date", "ideology", "ruling_party",
+                "manpower", "civilian_factories", "military_factories", "dockyards",
+                "political_power", "stability", "war_support", "command_power", "research_slots",
+                "capital_state_id", "major", "divisions", "divisions_by_template", "stockpiles_top10");
+
+        private final Writer out;
+        private final StringBuilder sb = new StringBuilder(512);
+        private boolean headerWritten = false;
+
+        Csv(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(String save, CountrySnapshot s) throws IOException {
+            sb.setLength(0);
+            if (!headerWritten) {
+                sb.append(String.join(",", COLUMNS)).append('\n');
+                headerWritten = true;
+            }
+
+            cell(save).cell(s.tag()).cell(s.saveDate()).cell(s.ideology()).cell(s.rulingParty())
+                    .cell(s.manpower()).cell(s.civilianFactories()).cell(s.militaryFactories()).cell(s.dockyards())
+                    .cell(s.politicalPower()).cell(s.stability()).cell(s.warSupport()).cell(s.commandPower())
+                    .cell(s.researchSlots()).cell(s.capitalStateId())
+                    .cell(s.major() == null ? null : s.major().toString());
+
+            Map<String, Integer> divisions = s.divisionsByTemplate() == null ? Map.of() : s.divisionsByTemplate();
+            int total = 0;
+            StringBuilder packed = new StringBuilder();
+            for (var e : divisions.entrySet()) {
+                total += e.getValue();
+                if (!packed.isEmpty()) packed.append(';');
+                appendName(packed, e.getKey());
+                packed.append('=').append(e.getValue());
+            }
+            cell(String.valueOf(total)).cell(packed.toString());
+
+            packed.setLength(0);
+            if (s.stockpilesTop10() != null) {
+                for (EquipmentAmount a : s.stockpilesTop10()) {
+                    if (!packed.isEmpty()) packed.append(';');
+                    appendName(packed, a.equipment());
+                    packed.append('=');
+                    if (a.amount() != null) appendNumber(packed, a.amount());
+                }
+            }
+            cell(packed.toString());
+
+            sb.setCharAt(sb.length() - 1, '\n');
+            out.append(sb);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private static void appendName(StringBuilder packed, String name) {
+            if (name == null) {
+                packed.append("null");
+                return;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c == '\\' || c == ';' || c == '=') packed.append('\\');
+                packed.append(c);
+            }
+        }
+
+        private Csv cell(Double d) {
+            if (d != null && !d.isNaN() && !d.isInfinite()) appendNumber(sb, d);
+            sb.append(',');
+            return this;
+        }
+
+        private Csv cell(String s) {
+            if (s != null) {
+                boolean quote = s.indexOf(',') >= 0 || s.indexOf('"') >= 0
+                        || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0;
+                if (quote) sb.append('"').append(s.replace("\"", "\"\"")).append('"');
+                else sb.append(s);
+            }
+            sb.append(',');
+            return this;
+        }
+    }
+
+    /**
+     * Whole numbers without a trailing ".0", everything else as {@link Double#toString}.
+     */
+    private static void appendNumber(StringBuilder sb, double d) {
+        if (d == Math.rint(d) && Math.abs(d) < 1e15) sb.append((long) d);
+        else sb.append(d);
+    }
+}
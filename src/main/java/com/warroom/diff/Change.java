@@ -0,0 +1,32 @@
+package com.warroom.diff;
+
+/**
+ * One difference between two trees or two snapshots. {@code path} names the value with dots between
+ * keys and {@code [i]} for list positions, e.g. {@code countries.GER.politics.ruling_party}.
+ * {@code before} is null for additions and {@code after} for removals.
+ */
+public record Change(Kind kind, String path, Object before, Object after) {
+
+    public enum Kind { ADDED, REMOVED, CHANGED }
+
+    static Change added(String path, Object after) {
+        return new Change(Kind.ADDED, path, null, after);
+    }
+
+    static Change removed(String path, Object before) {
+        return new Change(Kind.REMOVED, path, before, null);
+    }
+
+    static Change changed(String path, Object before, Object after) {
+        return new Change(Kind.CHANGED, path, before, after);
+    }
+
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case ADDED -> "+ " + path + " = " + after;
+            case REMOVED -> "- " + path + " = " + before;
+            case CHANGED -> "~ " + path + ": " + before + " -> " + after;
+        };
+    }
+}
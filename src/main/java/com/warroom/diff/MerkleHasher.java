@@ -0,0 +1,97 @@
+package com.warroom.diff;
+
+import com.warroom.parser.ClausewitzParser.BoolVal;
+import com.warroom.parser.ClausewitzParser.ListVal;
+import com.warroom.parser.ClausewitzParser.NumVal;
+import com.warroom.parser.ClausewitzParser.ObjVal;
+import com.warroom.parser.ClausewitzParser.StrVal;
+import com.warroom.parser.ClausewitzParser.Value;
+import com.warroom.parser.CompactTree;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 64-bit structural hashes of value trees, computed bottom-up and remembered per node, so that
+ * once both trees are hashed two subtrees can be compared in O(1). Objects hash independently of
+ * key order and lists depend on element order.
+ *
+ * <p>Objects of map-backed trees from {@code ClausewitzParser.parseRoot} are remembered by
+ * identity. A {@link CompactTree} hands out a new view on every access, so its objects are
+ * remembered by tree and object id instead, in one {@code long[]} per tree, and no view is kept
+ * alive. Lists are not remembered: they are rehashed from their elements, whose objects are.
+ * Not thread-safe.
+ */
+public final class MerkleHasher {
+
+    private record CompactHashes(long[] hashes, BitSet known) {}
+
+    private final Map<Value, Long> hashes = new IdentityHashMap<>();
+    private final Map<CompactTree, CompactHashes> compactHashes = new IdentityHashMap<>();
+
+    public long hash(Value v) {
+        if (v == null) return 0;
+        if (v instanceof ObjVal o) {
+            CompactTree tree = CompactTree.treeOf(o);
+            if (tree != null) return hashCompact(tree, o);
+            Long known = hashes.get(v);
+            if (known != null) return known;
+            long h = hashObject(o);
+            hashes.put(v, h);
+            return h;
+        }
+        return switch (v) {
+            case ListVal l -> hashList(l);
+            case NumVal(double d) -> mix(0x4E55_4D00L ^ Double.doubleToLongBits(d == 0.0 ? 0.0 : d));
+            case BoolVal(boolean b) -> mix(b ? 0x424F_4F4C_0001L : 0x424F_4F4C_0000L);
+            case StrVal(String s) -> mix(0x5354_5200L ^ string(s));
+            default -> throw new IllegalStateException();
+        };
+    }
+
+    private long hashCompact(CompactTree tree, ObjVal o) {
+        CompactHashes memo = compactHashes.computeIfAbsent(tree,
+                t -> new CompactHashes(new long[t.objectCount()], new BitSet(t.objectCount())));
+        int id = CompactTree.objectId(o);
+        if (memo.known().get(id)) return memo.hashes()[id];
+        long h = hashObject(o);
+        memo.hashes()[id] = h;
+        memo.known().set(id);
+        return h;
+    }
+
+    private long hashObject(ObjVal o) {
+        long h = 0x4F42_4A00L;
+        for (var e : o.map().entrySet()) {
+            h += mix(string(e.getKey()) * 31 + hash(e.getValue()));
+        }
+        return mix(h);
+    }
+
+    private long hashList(ListVal l) {
+        long h = 0x4C49_5354L;
+        for (Value item : l.list()) {
+            h = h * 0x9E37_79B9_7F4A_7C15L + hash(item);
+        }
+        return mix(h);
+    }
+
+    private static long string(String s) {
+        long h = 0xCBF2_9CE4_8422_2325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x0000_0100_0000_01B3L;
+        }
+        return h;
+    }
+
+    /**
+     * Finaliser from SplitMix64.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+        return z ^ (z >>> 31);
+    }
+}
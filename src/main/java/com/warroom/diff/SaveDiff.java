@@ -0,0 +1,111 @@
+package com.warroom.diff;
+
+import com.warroom.index.SaveIndex;
+import com.warroom.parser.Clausewitz;
+import com.warroom.parser.ClausewitzParser;
+import com.warroom.parser.ClausewitzParser.ObjVal;
+import com.warroom.parser.ClausewitzParser.Value;
+import com.warroom.parser.SaveFormat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Diff of two indexed saves. The {@link SaveIndex} blocks are the top level of the Merkle tree,
+ * hashed straight from the save bytes. A country or top-level block whose bytes are identical in
+ * both saves is skipped without being parsed. Only blocks that differ are parsed and handed to
+ * {@link TreeDiff}. Top-level values outside any indexed block, such as {@code date}, are parsed
+ * from the gaps between blocks and diffed as one tree.
+ *
+ * <p>Changed blocks are parsed and diffed in parallel. Both versions of every changed block are
+ * alive at once, so they are parsed into {@link com.warroom.parser.CompactTree}s rather than maps.
+ */
+public final class SaveDiff {
+
+    public record Save(ByteBuffer data, SaveIndex index) {}
+
+    public record Result(List<Change> changes, int blocksCompared, int blocksSkipped, long nanos) {
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d changes; %d of %d blocks identical; %d ms",
+                    changes.size(), blocksSkipped, blocksCompared, nanos / 1_000_000);
+        }
+    }
+
+    private record Pair(String path, String key, ByteBuffer before, ByteBuffer after) {}
+
+    private SaveDiff() {}
+
+    public static Result diff(Save a, Save b) {
+        long start = System.nanoTime();
+        List<Pair> pairs = new ArrayList<>();
+        int compared = 0;
+        int skipped = 0;
+
+        for (String key : union(a.index().topLevel().keySet(), b.index().topLevel().keySet())) {
+            if (key.equals(SaveIndex.COUNTRIES)) continue;
+            compared++;
+            var x = block(a, a.index().topLevel(key));
+            var y = block(b, b.index().topLevel(key));
+            if (sameBytes(x, y)) skipped++;
+            else pairs.add(new Pair(key, key, x, y));
+        }
+
+        for (String tag : union(a.index().countries().keySet(), b.index().countries().keySet())) {
+            compared++;
+            var x = block(a, a.index().country(tag));
+            var y = block(b, b.index().country(tag));
+            if (sameBytes(x, y)) skipped++;
+            else pairs.add(new Pair(SaveIndex.COUNTRIES + "." + tag, tag, x, y));
+        }
+
+        List<Change> changes = new ArrayList<>(TreeDiff.diff(topLevelScalars(a), topLevelScalars(b)));
+        pairs.parallelStream()
+                .map(p -> TreeDiff.diff(p.path(), parseBlock(p.before(), a.index().format(), p.key()),
+                        parseBlock(p.after(), b.index().format(), p.key())))
+                .forEachOrdered(changes::addAll);
+
+        return new Result(changes, compared, skipped, System.nanoTime() - start);
+    }
+
+    private static Set<String> union(Set<String> x, Set<String> y) {
+        Set<String> out = new LinkedHashSet<>(x);
+        out.addAll(y);
+        return out;
+    }
+
+    private static ByteBuffer block(Save save, SaveIndex.Block block) {
+        return block == null ? null : SaveIndex.slice(save.data(), block);
+    }
+
+    private static boolean sameBytes(ByteBuffer x, ByteBuffer y) {
+        if (x == null || y == null) return x == y;
+        if (x.remaining() != y.remaining()) return false;
+        if (crc(x) != crc(y)) return false;
+        return x.mismatch(y) < 0;
+    }
+
+    private static long crc(ByteBuffer bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.duplicate());
+        return crc.getValue();
+    }
+
+    private static Value parseBlock(ByteBuffer block, SaveFormat format, String key) {
+        if (block == null) return null;
+        ObjVal root = new ClausewitzParser(format.tokens(block)).parseCompact();
+        return Clausewitz.get(root, key).orElse(null);
+    }
+
+    /**
+     * Everything at the top level that is not inside an indexed block, parsed as one object.
+     */
+    private static ObjVal topLevelScalars(Save save) {
+        return new ClausewitzParser(save.index().format().tokens(save.index().topLevelGaps(save.data()))).parseRoot();
+    }
+}
@@ -0,0 +1,95 @@
+package com.warroom.diff;
+
+import com.warroom.model.CountrySnapshot;
+
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Field-by-field diff of two {@link CountrySnapshot}s. Scalar fields change as a whole, map fields
+ * are compared per key, and list fields of records keyed by a leading String component, such as
+ * the stockpile list, are compared per key. Paths are record component names, e.g.
+ * {@code divisionsByTemplate.Infantry} or {@code stockpilesTop10.infantry_equipment_1}.
+ */
+public final class SnapshotDiff {
+
+    private static final RecordComponent[] COMPONENTS = CountrySnapshot.class.getRecordComponents();
+
+    private SnapshotDiff() {}
+
+    public static List<Change> diff(CountrySnapshot a, CountrySnapshot b) {
+        List<Change> out = new ArrayList<>();
+        if (a == null || b == null) {
+            if (a != b) out.add(a == null ? Change.added("", b) : Change.removed("", a));
+            return out;
+        }
+        for (RecordComponent c : COMPONENTS) {
+            diffValue(out, c.getName(), read(c, a), read(c, b));
+        }
+        return out;
+    }
+
+    private static void diffValue(List<Change> out, String path, Object x, Object y) {
+        if (Objects.equals(x, y)) return;
+        if (x == null) {
+            out.add(Change.added(path, y));
+        } else if (y == null) {
+            out.add(Change.removed(path, x));
+        } else if (x instanceof Map<?, ?> mx && y instanceof Map<?, ?> my) {
+            diffMaps(out, path, mx, my);
+        } else if (x instanceof List<?> lx && y instanceof List<?> ly && keyed(lx) && keyed(ly)) {
+            diffMaps(out, path, byKey(lx), byKey(ly));
+        } else if (x instanceof Record rx && y instanceof Record ry && rx.getClass() == ry.getClass()) {
+            for (RecordComponent c : rx.getClass().getRecordComponents()) {
+                diffValue(out, path + "." + c.getName(), read(c, rx), read(c, ry));
+            }
+        } else {
+            out.add(Change.changed(path, x, y));
+        }
+    }
+
+    private static void diffMaps(List<Change> out, String path, Map<?, ?> x, Map<?, ?> y) {
+        for (var e : x.entrySet()) {
+            diffValue(out, path + "." + e.getKey(), e.getValue(), y.get(e.getKey()));
+        }
+        for (var e : y.entrySet()) {
+            if (!x.containsKey(e.getKey())) out.add(Change.added(path + "." + e.getKey(), e.getValue()));
+        }
+    }
+
+    /**
+     * True if every element is a record whose first component is a String, e.g. an EquipmentAmount.
+     */
+    private static boolean keyed(List<?> list) {
+        for (Object o : list) {
+            if (!(o instanceof Record r)) return false;
+            RecordComponent[] cs = r.getClass().getRecordComponents();
+            if (cs.length < 2 || cs[0].getType() != String.class || read(cs[0], r) == null) return false;
+        }
+        return true;
+    }
+
+    private static Map<String, Object> byKey(List<?> list) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (Object o : list) {
+            Record r = (Record) o;
+            RecordComponent[] cs = r.getClass().getRecordComponents();
+            String key = (String) read(cs[0], r);
+            if (cs.length == 2) out.putIfAbsent(key, read(cs[1], r));
+            else out.putIfAbsent(key, r);
+        }
+        return out;
+    }
+
+    private static Object read(RecordComponent c, Object record) {
+        try {
+            return c.getAccessor().invoke(record);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Cannot read " + c.getName(), ex);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.warroom.diff;
+
+import com.warroom.parser.ClausewitzParser;
+import com.warroom.parser.ClausewitzParser.ListVal;
+import com.warroom.parser.ClausewitzParser.ObjVal;
+import com.warroom.parser.ClausewitzParser.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Structural diff of two {@link Value} trees. Subtrees whose {@link MerkleHasher} hashes match are
+ * taken as equal without being walked. Objects are compared key by key and lists position by
+ * position. Two values of different kinds at the same path are one change.
+ *
+ * <p>Hash equality stands in for deep equality, so a 64-bit collision could hide a change; for
+ * diffs between saves the odds are negligible.
+ */
+public final class TreeDiff {
+
+    private final MerkleHasher before;
+    private final MerkleHasher after;
+    private final List<Change> changes = new ArrayList<>();
+
+    private TreeDiff(MerkleHasher before, MerkleHasher after) {
+        this.before = before;
+        this.after = after;
+    }
+
+    public static List<Change> diff(Value a, Value b) {
+        return diff("", a, b);
+    }
+
+    /**
+     * Diffs {@code a} against {@code b}, prefixing every reported path with {@code path}.
+     */
+    public static List<Change> diff(String path, Value a, Value b) {
+        return diff(path, a, b, new MerkleHasher(), new MerkleHasher());
+    }
+
+    /**
+     * As {@link #diff(String, Value, Value)}, reusing hashers that may already know parts of the trees.
+     */
+    public static List<Change> diff(String path, Value a, Value b, MerkleHasher hashesOfA, MerkleHasher hashesOfB) {
+        TreeDiff d = new TreeDiff(hashesOfA, hashesOfB);
+        d.walk(path, a, b);
+        return d.changes;
+    }
+
+    private void walk(String path, Value a, Value b) {
+        if (a == null && b == null) return;
+        if (a == null) {
+            changes.add(Change.added(path, b));
+            return;
+        }
+        if (b == null) {
+            changes.add(Change.removed(path, a));
+            return;
+        }
+        if (before.hash(a) == after.hash(b)) return;
+
+        if (a instanceof ObjVal oa && b instanceof ObjVal ob) {
+            for (var e : oa.map().entrySet()) {
+                entry(path, e.getKey(), e.getValue(), ob.map().get(e.getKey()));
+            }
+            for (var e : ob.map().entrySet()) {
+                if (!oa.map().containsKey(e.getKey())) entry(path, e.getKey(), null, e.getValue());
+            }
+        } else if (a instanceof ListVal la && b instanceof ListVal lb) {
+            elements(path, la.list(), lb.list());
+        } else {
+            changes.add(Change.changed(path, a, b));
+        }
+    }
+
+    /**
+     * Anonymous items are reported as positions of their object, e.g. {@code owned_states[3]}.
+     */
+    private void entry(String path, String key, Value a, Value b) {
+        if (!ClausewitzParser.ITEMS.equals(key)) {
+            walk(path.isEmpty() ? key : path + "." + key, a, b);
+        } else if (a == null || b == null || before.hash(a) != after.hash(b)) {
+            elements(path, items(a), items(b));
+        }
+    }
+
+    private void elements(String path, List<Value> a, List<Value> b) {
+        int n = Math.max(a.size(), b.size());
+        for (int i = 0; i < n; i++) {
+            walk(path + "[" + i + "]", i < a.size() ? a.get(i) : null, i < b.size() ? b.get(i) : null);
+        }
+    }
+
+    private static List<Value> items(Value v) {
+        if (v == null) return List.of();
+        return v instanceof ListVal l ? l.list() : List.of(v);
+    }
+}
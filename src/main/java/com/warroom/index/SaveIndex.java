@@ -0,0 +1,341 @@
+package com.warroom.index;
+
+import com.warroom.parser.BinaryTokenizer;
+import com.warroom.parser.SaveFormat;
+import com.warroom.parser.TokenTable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Byte offsets of every top-level {@code key={...}} block of a save and of every
+ * {@code countries.<TAG>={...}} block, built in a single pass over the save. Slicing a block
+ * out of the save is then O(1) instead of a brace-matching rescan from the start of the file.
+ *
+ * <p>Text and binary saves are indexed alike; the index records which {@link SaveFormat} it found,
+ * so that slices of the save are read with the matching tokenizer.
+ */
+public final class SaveIndex {
+
+    public static final String COUNTRIES = "countries";
+
+    /**
+     * A {@code key={...}} entry: {@code start} is the first byte of the key, {@code open} the
+     * opening brace and {@code end} the offset just past the closing brace.
+     */
+    public record Block(String key, int start, int open, int end) {
+        public int length() {
+            return end - start;
+        }
+    }
+
+    private final SaveFormat format;
+    private final int contentStart;
+    private final Map<String, Block> topLevel;
+    private final Map<String, Block> countries;
+
+    private SaveIndex(SaveFormat format, int contentStart, Map<String, Block> topLevel, Map<String, Block> countries) {
+        this.format = format;
+        this.contentStart = contentStart;
+        this.topLevel = Collections.unmodifiableMap(topLevel);
+        this.countries = Collections.unmodifiableMap(countries);
+    }
+
+    /**
+     * An index with the given blocks, e.g. one read back from a cache.
+     */
+    public static SaveIndex of(SaveFormat format, int contentStart,
+                               Map<String, Block> topLevel, Map<String, Block> countries) {
+        return new SaveIndex(format, contentStart, new LinkedHashMap<>(topLevel), new LinkedHashMap<>(countries));
+    }
+
+    public static SaveIndex build(ByteBuffer data) {
+        Builder b = new Builder();
+        b.scan(data, data.limit());
+        return b.build();
+    }
+
+    public SaveFormat format() {
+        return format;
+    }
+
+    /**
+     * Offset of the first byte after the format magic, if the save has one.
+     */
+    public int contentStart() {
+        return contentStart;
+    }
+
+    /**
+     * First top-level block with the given key, or null.
+     */
+    public Block topLevel(String key) {
+        return topLevel.get(key);
+    }
+
+    public Map<String, Block> topLevel() {
+        return topLevel;
+    }
+
+    /**
+     * First block for the given tag inside the top-level {@code countries} block, or null.
+     */
+    public Block country(String tag) {
+        return countries.get(tag);
+    }
+
+    public Map<String, Block> countries() {
+        return countries;
+    }
+
+    public List<String> countryTags() {
+        List<String> tags = new ArrayList<>(countries.keySet());
+        Collections.sort(tags);
+        return tags;
+    }
+
+    /**
+     * The bytes of {@code block} as a standalone {@code key={...}} document, without copying.
+     */
+    public static ByteBuffer slice(ByteBuffer data, Block block) {
+        return data.slice(block.start(), block.length());
+    }
+
+    /**
+     * Everything at the top level that lies outside the indexed blocks, such as {@code date} or
+     * {@code player}, copied into one small document. Blocks are cut out by offset, not scanned.
+     */
+    public ByteBuffer topLevelGaps(ByteBuffer data) {
+        List<Block> blocks = new ArrayList<>(topLevel.values());
+        blocks.sort(Comparator.comparingInt(Block::start));
+
+        List<int[]> ranges = new ArrayList<>();
+        int pos = contentStart;
+        for (Block b : blocks) {
+            if (b.start() > pos) ranges.add(new int[] {pos, b.start()});
+            pos = Math.max(pos, b.end());
+        }
+        if (pos < data.limit()) ranges.add(new int[] {pos, data.limit()});
+
+        // Text ranges are kept apart by a newline; binary tokens delimit themselves.
+        int separator = format == SaveFormat.TEXT ? 1 : 0;
+        int length = ranges.size() * separator;
+        for (int[] r : ranges) length += r[1] - r[0];
+        ByteBuffer gaps = ByteBuffer.allocate(length);
+        for (int[] r : ranges) {
+            gaps.put(data.slice(r[0], r[1] - r[0]));
+            if (separator > 0) gaps.put((byte) '\n');
+        }
+        return gaps.flip();
+    }
+
+    /**
+     * Resumable structural scanner: {@link #scan} may be called repeatedly as more of the save
+     * becomes available, as long as earlier bytes stay in place. The format is detected on the
+     * first call, which must therefore cover the magic; binary keys are named with
+     * {@link TokenTable#standard()}.
+     */
+    public static final class Builder {
+        private final Map<String, Block> topLevel = new LinkedHashMap<>();
+        private final Map<String, Block> countries = new LinkedHashMap<>();
+
+        private SaveFormat format;
+        private int contentStart;
+        private TokenTable table;
+
+        private int pos = 0;
+        private int depth = 0;
+        private boolean inString = false;
+        private boolean escaped = false;
+        private boolean inComment = false;
+
+        private int keyStart = -1;
+        private int keyEnd = -1;
+        private boolean sawEquals = false;
+
+        private boolean inCountries = false;
+        private String openKey;
+        private int openStart;
+        private int openBrace;
+        private String openTag;
+        private int openTagStart;
+        private int openTagBrace;
+
+        public void scan(ByteBuffer data, int limit) {
+            if (format == null) {
+                format = SaveFormat.detect(data);
+                contentStart = SaveFormat.contentStart(data);
+                pos = contentStart;
+                if (format == SaveFormat.BINARY) table = TokenTable.standard();
+            }
+            if (format == SaveFormat.BINARY) scanBinary(data, limit);
+            else scanText(data, limit);
+        }
+
+        private void scanText(ByteBuffer data, int limit) {
+            while (pos < limit) {
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else {
+                        pos = StructuralScanner.nextQuoteOrEscape(data, pos, limit);
+                        if (pos == limit) return;
+                        if (data.get(pos) == '\\') escaped = true;
+                        else inString = false;
+                    }
+                    pos++;
+                    continue;
+                }
+                if (inComment) {
+                    pos = StructuralScanner.nextNewline(data, pos, limit);
+                    if (pos == limit) return;
+                    inComment = false;
+                    pos++;
+                    continue;
+                }
+                // Below the tracked depths nothing but braces, strings and comments matters:
+                // the key state is already reset and stays so, so jump to the next of those.
+                if (!tracksKeys()) {
+                    pos = StructuralScanner.nextStructural(data, pos, limit);
+                    if (pos == limit) return;
+                }
+
+                int c = data.get(pos) & 0xFF;
+                switch (c) {
+                    case '"' -> {
+                        inString = true;
+                        resetKey();
+                    }
+                    case '#' -> {
+                        inComment = true;
+                        resetKey();
+                    }
+                    case '{' -> {
+                        openBlock(data);
+                        depth++;
+                    }
+                    case '}' -> {
+                        depth--;
+                        closeBlock();
+                        resetKey();
+                    }
+                    case '=' -> {
+                        if (keyEnd < 0 && keyStart >= 0) keyEnd = pos;
+                        if (keyEnd >= 0 && !sawEquals) sawEquals = true;
+                        else resetKey();
+                    }
+                    default -> {
+                        if (isWhitespace(c)) {
+                            if (keyStart >= 0 && keyEnd < 0) keyEnd = pos;
+                        } else if (isKeyChar(c) && tracksKeys()) {
+                            if (keyEnd >= 0) resetKey();
+                            if (keyStart < 0) keyStart = pos;
+                        } else {
+                            resetKey();
+                        }
+                    }
+                }
+                pos++;
+            }
+        }
+
+        /**
+         * Walks whole tokens only; a token cut off at {@code limit} is picked up by the next call.
+         */
+        private void scanBinary(ByteBuffer data, int limit) {
+            int length;
+            while ((length = BinaryTokenizer.tokenLength(data, pos, limit)) > 0) {
+                int id = BinaryTokenizer.u16(data, pos);
+                switch (id) {
+                    case BinaryTokenizer.OPEN_ID -> {
+                        openBlock(data);
+                        depth++;
+                    }
+                    case BinaryTokenizer.CLOSE_ID -> {
+                        depth--;
+                        closeBlock();
+                        resetKey();
+                    }
+                    case BinaryTokenizer.EQUALS_ID -> {
+                        if (keyStart >= 0 && !sawEquals) sawEquals = true;
+                        else resetKey();
+                    }
+                    default -> {
+                        // A key candidate, or the scalar value that ends one.
+                        if (tracksKeys() && !sawEquals) keyStart = pos;
+                        else resetKey();
+                    }
+                }
+                pos += length;
+            }
+        }
+
+        public SaveIndex build() {
+            return new SaveIndex(format != null ? format : SaveFormat.TEXT, contentStart, topLevel, countries);
+        }
+
+        private boolean tracksKeys() {
+            return depth == 0 || (depth == 1 && inCountries);
+        }
+
+        private void openBlock(ByteBuffer data) {
+            if (sawEquals && tracksKeys()) {
+                String key = keyText(data);
+                if (depth == 0) {
+                    openKey = key;
+                    openStart = keyStart;
+                    openBrace = pos;
+                    inCountries = key.equals(COUNTRIES);
+                } else if (!key.isEmpty() && isIdentStart(key.charAt(0))) {
+                    openTag = key;
+                    openTagStart = keyStart;
+                    openTagBrace = pos;
+                }
+            }
+            resetKey();
+        }
+
+        private void closeBlock() {
+            if (depth == 0) {
+                if (openKey != null) topLevel.putIfAbsent(openKey, new Block(openKey, openStart, openBrace, pos + 1));
+                openKey = null;
+                inCountries = false;
+            } else if (depth == 1 && openTag != null) {
+                countries.putIfAbsent(openTag, new Block(openTag, openTagStart, openTagBrace, pos + 1));
+                openTag = null;
+            }
+            if (depth < 0) depth = 0;
+        }
+
+        private String keyText(ByteBuffer data) {
+            if (format == SaveFormat.BINARY) return BinaryTokenizer.keyText(data, keyStart, table);
+            byte[] bytes = new byte[keyEnd - keyStart];
+            data.get(keyStart, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void resetKey() {
+            keyStart = -1;
+            keyEnd = -1;
+            sawEquals = false;
+        }
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || (c >= 0x09 && c <= 0x0D) || (c >= 0x1C && c <= 0x1F);
+    }
+
+    private static boolean isIdentStart(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c >= 0x80;
+    }
+
+    private static boolean isKeyChar(int c) {
+        return isIdentStart(c) || (c >= '0' && c <= '9') || c == '.' || c == '-';
+    }
+}
@@ -0,0 +1,72 @@
+package com.warroom.index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Finds the next structurally interesting byte eight bytes at a time (SWAR: SIMD within a
+ * register). Each 64-bit word is XORed with the wanted byte repeated eight times, which turns
+ * matches into zero bytes, and {@code (x - 0x01..01) & ~x & 0x80..80} flags zero bytes. The flag
+ * can also be set above a real match because of the borrow, but never below one, so reading the
+ * word little-endian and taking the lowest flag gives the first match exactly.
+ *
+ * <p>Brace matching only needs to stop at braces, quotes and comments; everything in between,
+ * the bulk of a save, is passed over at roughly memory bandwidth.
+ */
+public final class StructuralScanner {
+
+    private static final long ONES = 0x0101_0101_0101_0101L;
+    private static final long HIGHS = 0x8080_8080_8080_8080L;
+
+    private static final long OPEN = ONES * '{';
+    private static final long CLOSE = ONES * '}';
+    private static final long QUOTE = ONES * '"';
+    private static final long HASH = ONES * '#';
+    private static final long BACKSLASH = ONES * '\\';
+    private static final long NEWLINE = ONES * '\n';
+
+    private StructuralScanner() {}
+
+    /**
+     * Offset of the first {@code {}, {@code }}, {@code "} or {@code #} in {@code [from, limit)},
+     * or {@code limit} if there is none.
+     */
+    public static int nextStructural(ByteBuffer data, int from, int limit) {
+        return next(data, from, limit, OPEN, CLOSE, QUOTE, HASH);
+    }
+
+    /**
+     * Offset of the first {@code "} or {@code \} in {@code [from, limit)}, or {@code limit}: the
+     * bytes that can end or escape inside a string.
+     */
+    public static int nextQuoteOrEscape(ByteBuffer data, int from, int limit) {
+        return next(data, from, limit, QUOTE, BACKSLASH, QUOTE, BACKSLASH);
+    }
+
+    /**
+     * Offset of the first {@code \n} in {@code [from, limit)}, or {@code limit}: the end of a comment.
+     */
+    public static int nextNewline(ByteBuffer data, int from, int limit) {
+        return next(data, from, limit, NEWLINE, NEWLINE, NEWLINE, NEWLINE);
+    }
+
+    private static int next(ByteBuffer data, int from, int limit, long a, long b, long c, long d) {
+        boolean bigEndian = data.order() == ByteOrder.BIG_ENDIAN;
+        int i = from;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            long word = data.getLong(i);
+            if (bigEndian) word = Long.reverseBytes(word);
+            long hits = zeroBytes(word ^ a) | zeroBytes(word ^ b) | zeroBytes(word ^ c) | zeroBytes(word ^ d);
+            if (hits != 0) return i + (Long.numberOfTrailingZeros(hits) >>> 3);
+        }
+        for (; i < limit; i++) {
+            byte x = data.get(i);
+            if (x == (byte) a || x == (byte) b || x == (byte) c || x == (byte) d) return i;
+        }
+        return limit;
+    }
+
+    private static long zeroBytes(long x) {
+        return (x - ONES) & ~x & HIGHS;
+    }
+}
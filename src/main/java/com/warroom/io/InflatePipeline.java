@@ -0,0 +1,143 @@
+package com.warroom.io;
+
+import com.warroom.index.SaveIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Inflates a compressed save on a background thread while the calling thread copies each chunk
+ * into the final content buffer and feeds it to the {@link SaveIndex} scanner. Chunks travel
+ * through a small, fixed pool of buffers, so at most {@link #CHUNKS_IN_FLIGHT} chunks exist besides
+ * the single decompressed copy.
+ */
+final class InflatePipeline {
+
+    static final int CHUNK_SIZE = 1 << 20;
+    static final int CHUNKS_IN_FLIGHT = 4;
+    static final int MAX_INITIAL_CAPACITY = 256 << 20;
+
+    /**
+     * {@code indexNanos} is the part of the run spent scanning for the index.
+     */
+    record Result(ByteBuffer bytes, SaveIndex index, long indexNanos) {}
+
+    /**
+     * {@code error} is whatever ended the producer abnormally; the consumer rethrows it.
+     */
+    private record Chunk(byte[] buf, int length, Throwable error) {
+        static final Chunk END = new Chunk(null, 0, null);
+    }
+
+    private InflatePipeline() {}
+
+    /**
+     * @param expectedSize decompressed size if the container records it, or -1; used to size the
+     *                     buffer and as the progress total
+     * @param progress     told the decompressed length after every chunk, or null
+     */
+    static Result run(InputStream inflater, long expectedSize, SaveLoader.Progress progress) throws IOException {
+        BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(CHUNKS_IN_FLIGHT);
+        BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(CHUNKS_IN_FLIGHT + 1);
+        for (int i = 0; i < CHUNKS_IN_FLIGHT; i++) free.add(new byte[CHUNK_SIZE]);
+
+        Thread producer = Thread.ofPlatform().name("save-inflater").daemon().start(() -> {
+            try {
+                while (true) {
+                    byte[] buf = free.take();
+                    int n = inflater.readNBytes(buf, 0, buf.length);
+                    if (n > 0) full.put(new Chunk(buf, n, null));
+                    if (n < buf.length) break;
+                }
+                full.put(Chunk.END);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable ex) {
+                // The queue has room for every buffer plus one more, so this never drops the error
+                // and the consumer is never left waiting on a dead producer.
+                full.offer(new Chunk(null, 0, ex));
+            }
+        });
+
+        byte[] content;
+        int length = 0;
+        SaveIndex.Builder index = new SaveIndex.Builder();
+        long indexNanos = 0;
+
+        try {
+            // Inside the try: if this fails, the producer must still be stopped before we return.
+            content = new byte[initialCapacity(expectedSize)];
+            while (true) {
+                Chunk chunk = full.take();
+                if (chunk.error() != null) throw rethrow(chunk.error());
+                if (chunk == Chunk.END) break;
+
+                if (length + chunk.length() > content.length) {
+                    content = Arrays.copyOf(content, grow(content.length, length + chunk.length()));
+                }
+                System.arraycopy(chunk.buf(), 0, content, length, chunk.length());
+                length += chunk.length();
+                free.put(chunk.buf());
+
+                long t0 = System.nanoTime();
+                index.scan(ByteBuffer.wrap(content), length);
+                indexNanos += System.nanoTime() - t0;
+                if (progress != null) progress.update(length, expectedSize > 0 ? Math.max(expectedSize, length) : -1);
+                if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Save decompression interrupted");
+        } finally {
+            // The caller closes the inflater as soon as we return, so the producer must be out of it.
+            producer.interrupt();
+            joinUninterruptibly(producer);
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(content, 0, length).slice();
+        return new Result(bytes, index.build(), indexNanos);
+    }
+
+    private static IOException rethrow(Throwable error) {
+        if (error instanceof IOException io) return io;
+        if (error instanceof RuntimeException re) throw re;
+        if (error instanceof Error e) throw e;
+        return new IOException("Save decompression failed", error);
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * The container's size is only a hint from the file, so it is trusted up to
+     * {@link #MAX_INITIAL_CAPACITY}; larger content grows the buffer as it arrives.
+     */
+    private static int initialCapacity(long expectedSize) {
+        if (expectedSize <= 0) return CHUNK_SIZE * 8;
+        return (int) Math.min(expectedSize, MAX_INITIAL_CAPACITY);
+    }
+
+    private static int grow(int current, int needed) {
+        long next = Math.max((long) current * 3 / 2, needed);
+        if (next > Integer.MAX_VALUE - 8) {
+            if (needed > Integer.MAX_VALUE - 8) throw new OutOfMemoryError("Decompressed save exceeds 2 GB");
+            next = Integer.MAX_VALUE - 8;
+        }
+        return (int) next;
+    }
+}
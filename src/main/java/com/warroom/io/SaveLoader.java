@@ -0,0 +1,223 @@
+package com.warroom.io;
+
+import com.warroom.index.SaveIndex;
+import com.warroom.metrics.LoadMetrics;
+import com.warroom.parser.SaveFormat;
+import com.warroom.parser.TokenTable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads a save file into a {@link ByteBuffer} holding its decompressed content, together with its
+ * {@link SaveIndex}.
+ *
+ * <p>The file itself is memory-mapped rather than read onto the heap. Uncompressed saves are
+ * used straight from the mapping, so their bytes live in the OS page cache; compressed saves
+ * are inflated from the mapping by an {@link InflatePipeline}, which indexes while it inflates.
+ * Whether the content is text or binary is detected from its magic while indexing.
+ */
+public final class SaveLoader {
+
+    public enum Compression { NONE, ZIP, GZIP }
+
+    /**
+     * Receives how much of the save has been read; {@code total} is -1 while unknown. Called on
+     * the reading thread.
+     */
+    @FunctionalInterface
+    public interface Progress {
+        void update(long done, long total);
+    }
+
+    /**
+     * Bytes indexed between progress updates and interruption checks of an uncompressed save.
+     */
+    private static final int SCAN_STEP = 8 << 20;
+
+    public record SaveData(ByteBuffer bytes, SaveIndex index, Compression compression, boolean mapped) {
+        public String compressionName() {
+            return compression.name().toLowerCase(java.util.Locale.ROOT);
+        }
+
+        public SaveFormat format() {
+            return index.format();
+        }
+    }
+
+    private SaveLoader() {}
+
+    public static SaveData read(Path file) throws IOException {
+        return read(file, null, null);
+    }
+
+    public static SaveData read(Path file, LoadMetrics metrics) throws IOException {
+        return read(file, metrics, null);
+    }
+
+    /**
+     * Same as {@link #read(Path)}, recording bytes and the read, decompress and index phases
+     * into {@code metrics} and reporting to {@code progress}, each if not null.
+     *
+     * @throws InterruptedIOException if the calling thread is interrupted; the partial content
+     *         is dropped and the inflater thread stopped
+     */
+    public static SaveData read(Path file, LoadMetrics metrics, Progress progress) throws IOException {
+        long allocated = LoadMetrics.threadAllocatedBytes();
+        long t0 = System.nanoTime();
+        ByteBuffer raw = map(file);
+        long mapped = System.nanoTime();
+
+        SaveData data = null;
+        long indexNanos = 0;
+
+        if (looksLikeZip(raw)) {
+            try {
+                var inflated = inflateZip(raw, progress);
+                data = new SaveData(inflated.bytes(), inflated.index(), Compression.ZIP, false);
+                indexNanos = inflated.indexNanos();
+            } catch (InterruptedIOException ex) {
+                throw ex;
+            } catch (IOException ignored) {
+            }
+        }
+
+        if (data == null && looksLikeGZip(raw)) {
+            try {
+                var inflated = inflateGZip(raw, progress);
+                data = new SaveData(inflated.bytes(), inflated.index(), Compression.GZIP, false);
+                indexNanos = inflated.indexNanos();
+            } catch (InterruptedIOException ex) {
+                throw ex;
+            } catch (IOException ignored) {
+            }
+        }
+
+        long inflated = System.nanoTime();
+        if (data == null) {
+            data = new SaveData(raw, index(raw, progress), Compression.NONE, true);
+            indexNanos = System.nanoTime() - inflated;
+        }
+        if (data.format() == SaveFormat.BINARY && TokenTable.standard().isEmpty()) {
+            throw new IOException("Binary save needs a token table; set " + TokenTable.ENVIRONMENT
+                    + " or -D" + TokenTable.PROPERTY + " to its path");
+        }
+
+        if (metrics != null) {
+            metrics.add(LoadMetrics.Phase.READ, mapped - t0);
+            metrics.add(LoadMetrics.Phase.DECOMPRESS, inflated - mapped - (data.mapped() ? 0 : indexNanos));
+            metrics.add(LoadMetrics.Phase.INDEX, indexNanos);
+            metrics.bytes(raw.limit(), data.bytes().remaining());
+            metrics.allocated(allocated, LoadMetrics.threadAllocatedBytes());
+        }
+        return data;
+    }
+
+    /**
+     * Maps the whole file read-only. A single mapping is limited to 2 GB, which is far above any save.
+     */
+    public static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Save too large to map (" + size + " bytes): " + file);
+            }
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Fingerprint of decompressed save content: its CRC-32C in the high half and its length in
+     * the low half. Hashing runs at memory bandwidth, a few dozen milliseconds for a large save.
+     */
+    public static long contentHash(ByteBuffer bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.duplicate());
+        return (crc.getValue() << 32) | (bytes.remaining() & 0xFFFF_FFFFL);
+    }
+
+    public static boolean looksLikeZip(ByteBuffer bytes) {
+        return bytes.limit() >= 4
+                && bytes.get(0) == 'P' && bytes.get(1) == 'K'
+                && (bytes.get(2) == 3 || bytes.get(2) == 5 || bytes.get(2) == 7)
+                && (bytes.get(3) == 4 || bytes.get(3) == 6 || bytes.get(3) == 8);
+    }
+
+    public static boolean looksLikeGZip(ByteBuffer bytes) {
+        return bytes.limit() >= 2
+                && (bytes.get(0) == (byte) 0x1F)
+                && (bytes.get(1) == (byte) 0x8B);
+    }
+
+    private static SaveIndex index(ByteBuffer raw, Progress progress) throws IOException {
+        SaveIndex.Builder index = new SaveIndex.Builder();
+        int limit = raw.limit();
+        for (int done = 0; done < limit; ) {
+            done = (int) Math.min(limit, (long) done + SCAN_STEP);
+            index.scan(raw, done);
+            if (progress != null) progress.update(done, limit);
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Save indexing interrupted");
+        }
+        return index.build();
+    }
+
+    private static InflatePipeline.Result inflateZip(ByteBuffer zipBytes, Progress progress) throws IOException {
+        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new ByteBufferInputStream(zipBytes)))) {
+            var entry = zis.getNextEntry();
+            if (entry == null) throw new IOException("ZIP had no entries");
+            return InflatePipeline.run(zis, entry.getSize(), progress);
+        }
+    }
+
+    private static InflatePipeline.Result inflateGZip(ByteBuffer gzBytes, Progress progress) throws IOException {
+        try (GZIPInputStream gis = new GZIPInputStream(new BufferedInputStream(new ByteBufferInputStream(gzBytes)))) {
+            return InflatePipeline.run(gis, gzipTrailerSize(gzBytes), progress);
+        }
+    }
+
+    /**
+     * Uncompressed size modulo 2^32 from the GZIP trailer (ISIZE); exact for any realistic save.
+     */
+    private static long gzipTrailerSize(ByteBuffer gzBytes) {
+        int n = gzBytes.limit();
+        if (n < 18) return -1;
+        return gzBytes.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(n - 4) & 0xFFFF_FFFFL;
+    }
+
+    static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf.duplicate();
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.warroom.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where the time of one save load went: I/O, inflate, indexing, definitions, tokenizing, parsing
+ * and mapping, plus volume counters and the latency distribution of individual countries.
+ *
+ * <p>All methods are thread-safe, so country workers record into the same instance. Phase times
+ * are summed over threads and can therefore exceed the wall-clock time of a parallel load.
+ */
+public final class LoadMetrics {
+
+    public enum Phase {
+        /** Opening and mapping the file. */
+        READ,
+        /** Inflating a compressed save, excluding the index scan that runs alongside. */
+        DECOMPRESS,
+        /** Building the structural index. */
+        INDEX,
+        /** Header, division templates and equipment definitions. */
+        DEFINITIONS,
+        /** Producing tokens for country blocks; estimated by sampling. */
+        TOKENIZE,
+        /** Reading country blocks against the extraction schema, excluding tokenizing. */
+        PARSE,
+        /** Assembling snapshots from extracted fields. */
+        MAP
+    }
+
+    private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_SUPPORTED = allocationSupported();
+
+    private final String file;
+    private final Instant started = Instant.now();
+    private final Map<Phase, LongAdder> phases = new EnumMap<>(Phase.class);
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesDecompressed = new AtomicLong();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder allocationMeasured = new LongAdder();
+    private final LongAdder allocationUnmeasured = new LongAdder();
+    private final LatencyHistogram countries = new LatencyHistogram();
+
+    public LoadMetrics(String file) {
+        this.file = file;
+        for (Phase p : Phase.values()) phases.put(p, new LongAdder());
+    }
+
+    public void add(Phase phase, long nanos) {
+        phases.get(phase).add(nanos);
+    }
+
+    public void bytes(long read, long decompressed) {
+        bytesRead.set(read);
+        bytesDecompressed.set(decompressed);
+    }
+
+    public void tokens(long n) {
+        tokens.add(n);
+    }
+
+    public void nodes(long n) {
+        nodes.add(n);
+    }
+
+    /**
+     * Records what one piece of work allocated, from {@link #threadAllocatedBytes()} readings taken
+     * on the same thread before and after it; a -1 reading counts the work as not measured.
+     */
+    public void allocated(long before, long after) {
+        if (before < 0 || after < 0) {
+            allocationUnmeasured.increment();
+            return;
+        }
+        allocationMeasured.increment();
+        if (after > before) allocatedBytes.add(after - before);
+    }
+
+    /**
+     * Records the end-to-end time of mapping one country.
+     */
+    public void country(long nanos) {
+        countries.record(nanos);
+    }
+
+    /**
+     * Bytes allocated by the calling thread so far, or -1 if they cannot be measured: the JVM
+     * does not track them, or the caller is a virtual thread, which the JVM never tracks.
+     */
+    public static long threadAllocatedBytes() {
+        if (!ALLOCATION_SUPPORTED || Thread.currentThread().isVirtual()) return -1;
+        return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+    }
+
+    public Report report() {
+        Map<Phase, Long> nanos = new EnumMap<>(Phase.class);
+        for (var e : phases.entrySet()) nanos.put(e.getKey(), e.getValue().sum());
+        return new Report(file, started, bytesRead.get(), bytesDecompressed.get(), nanos,
+                tokens.sum(), nodes.sum(), countries.count(),
+                countries.percentileNanos(0.50), countries.percentileNanos(0.99), countries.maxNanos(),
+                allocationMeasured.sum() > 0 ? allocatedBytes.sum() : -1, allocationUnmeasured.sum());
+    }
+
+    /**
+     * A point-in-time copy of the counters. {@code allocatedBytes} covers only the pieces of work
+     * whose allocation could be measured, and is -1 if there were none; {@code allocationUnmeasured}
+     * counts the others.
+     */
+    public record Report(String file, Instant started, long bytesRead, long bytesDecompressed,
+                         Map<Phase, Long> phaseNanos, long tokens, long nodes,
+                         long countries, long countryP50Nanos, long countryP99Nanos, long countryMaxNanos,
+                         long allocatedBytes, long allocationUnmeasured) {
+
+        public String toJson() {
+            StringBuilder sb = new StringBuilder(512);
+            sb.append("{\n");
+            sb.append("  \"file\": ").append(jsonString(file)).append(",\n");
+            sb.append("  \"started\": \"").append(started).append("\",\n");
+            sb.append("  \"bytesRead\": ").append(bytesRead).append(",\n");
+            sb.append("  \"bytesDecompressed\": ").append(bytesDecompressed).append(",\n");
+            sb.append("  \"phasesMs\": {");
+            boolean first = true;
+            for (var e : phaseNanos.entrySet()) {
+                sb.append(first ? "\n" : ",\n");
+                first = false;
+                sb.append("    \"").append(e.getKey().name().toLowerCase(Locale.ROOT)).append("\": ")
+                        .append(millis(e.getValue()));
+            }
+            sb.append("\n  },\n");
+            sb.append("  \"tokens\": ").append(tokens).append(",\n");
+            sb.append("  \"nodes\": ").append(nodes).append(",\n");
+            sb.append("  \"countries\": {\n");
+            sb.append("    \"count\": ").append(countries).append(",\n");
+            sb.append("    \"p50Ms\": ").append(millis(countryP50Nanos)).append(",\n");
+            sb.append("    \"p99Ms\": ").append(millis(countryP99Nanos)).append(",\n");
+            sb.append("    \"maxMs\": ").append(millis(countryMaxNanos)).append("\n");
+            sb.append("  },\n");
+            sb.append("  \"allocatedBytes\": ").append(allocatedBytes < 0 ? "null" : String.valueOf(allocatedBytes)).append(",\n");
+            sb.append("  \"allocationUnmeasured\": ").append(allocationUnmeasured);
+            sb.append("\n}\n");
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(512);
+            sb.append(String.format(Locale.US, "%s%n", file));
+            sb.append(String.format(Locale.US, "  read %,d bytes, %,d decompressed%n", bytesRead, bytesDecompressed));
+            for (var e : phaseNanos.entrySet()) {
+                sb.append(String.format(Locale.US, "  %-12s %10s ms%n",
+                        e.getKey().name().toLowerCase(Locale.ROOT), millis(e.getValue())));
+            }
+            sb.append(String.format(Locale.US, "  tokens %,d, nodes %,d%n", tokens, nodes));
+            sb.append(String.format(Locale.US, "  countries %,d: p50 %s ms, p99 %s ms, max %s ms%n",
+                    countries, millis(countryP50Nanos), millis(countryP99Nanos), millis(countryMaxNanos)));
+            if (allocatedBytes < 0) {
+                sb.append("  allocated: not measured");
+            } else {
+                sb.append(String.format(Locale.US, "  allocated %,d MB", allocatedBytes >> 20));
+                if (allocationUnmeasured > 0) {
+                    sb.append(String.format(Locale.US, " (%,d loads not measured)", allocationUnmeasured));
+                }
+            }
+            return sb.toString();
+        }
+
+        private static String millis(long nanos) {
+            return String.format(Locale.US, "%.3f", nanos / 1e6);
+        }
+
+        private static String jsonString(String s) {
+            if (s == null) return "null";
+            StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> sb.append("\\\"");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> {
+                        if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                        else sb.append(c);
+                    }
+                }
+            }
+            return sb.append('"').toString();
+        }
+    }
+
+    private static boolean allocationSupported() {
+        try {
+            if (!(THREADS instanceof com.sun.management.ThreadMXBean bean)) return false;
+            if (!bean.isThreadAllocatedMemorySupported()) return false;
+            if (!bean.isThreadAllocatedMemoryEnabled()) bean.setThreadAllocatedMemoryEnabled(true);
+            return bean.isThreadAllocatedMemoryEnabled();
+        } catch (UnsupportedOperationException | SecurityException ex) {
+            return false;
+        }
+    }
+}
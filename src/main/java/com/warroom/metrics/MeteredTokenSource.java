@@ -0,0 +1,65 @@
+package com.warroom.metrics;
+
+import com.warroom.parser.Token;
+import com.warroom.parser.TokenSource;
+
+/**
+ * Counts the tokens a source produces and estimates the time spent producing them.
+ *
+ * <p>Timing every token would cost as much as tokenizing it, so only one call in
+ * {@link #SAMPLE_EVERY} is timed, the clock overhead is subtracted, and the samples are scaled
+ * up. {@link #skipBlock} is timed in full since it is one call per skipped block.
+ */
+public final class MeteredTokenSource implements TokenSource {
+
+    static final int SAMPLE_EVERY = 64;
+
+    private static final long CLOCK_OVERHEAD = clockOverhead();
+
+    private final TokenSource source;
+    private long tokens;
+    private long sampledNanos;
+    private long skipNanos;
+
+    public MeteredTokenSource(TokenSource source) {
+        this.source = source;
+    }
+
+    @Override
+    public Token next() {
+        if (tokens++ % SAMPLE_EVERY != 0) return source.next();
+
+        long t0 = System.nanoTime();
+        Token t = source.next();
+        sampledNanos += Math.max(0, System.nanoTime() - t0 - CLOCK_OVERHEAD);
+        return t;
+    }
+
+    @Override
+    public void skipBlock() {
+        long t0 = System.nanoTime();
+        source.skipBlock();
+        skipNanos += System.nanoTime() - t0;
+    }
+
+    public long tokens() {
+        return tokens;
+    }
+
+    /**
+     * Estimated nanoseconds spent inside the wrapped source so far.
+     */
+    public long estimatedNanos() {
+        return sampledNanos * SAMPLE_EVERY + skipNanos;
+    }
+
+    private static long clockOverhead() {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 10_000; i++) {
+            long t0 = System.nanoTime();
+            long t1 = System.nanoTime();
+            best = Math.min(best, t1 - t0);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,174 @@
+package com.warroom.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import static com.warroom.parser.Token.Type.*;
+
+/**
+ * Tokenizer for binary (ironman) saves, producing the same tokens as {@link ByteTokenizer} does
+ * for the equivalent text. Every token starts with a little-endian 16-bit id: a few ids are
+ * operators or typed scalars followed by a fixed-size or length-prefixed payload, all other ids
+ * are field names looked up in a {@link TokenTable}.
+ *
+ * <p>Numbers arrive already encoded, so they become fixed-point {@link Token}s without any
+ * digit scanning: integers as they are, {@code f32} with three decimals and {@code f64} with
+ * five, as the game writes them. Ids missing from the table come out as identifiers of the form
+ * {@code __unknown_0x1234}.
+ */
+public final class BinaryTokenizer implements TokenSource {
+
+    public static final int EQUALS_ID = 0x0001;
+    public static final int OPEN_ID = 0x0003;
+    public static final int CLOSE_ID = 0x0004;
+    public static final int I32_ID = 0x000C;
+    public static final int F32_ID = 0x000D;
+    public static final int BOOL_ID = 0x000E;
+    public static final int QUOTED_ID = 0x000F;
+    public static final int U32_ID = 0x0014;
+    public static final int UNQUOTED_ID = 0x0017;
+    public static final int F64_ID = 0x0167;
+    public static final int U64_ID = 0x029C;
+    public static final int I64_ID = 0x0317;
+
+    private static final int F32_SCALE = 3;
+    private static final int F64_SCALE = 5;
+
+    /** Strings in binary saves are Windows-1252, not UTF-8. */
+    private static final Charset CHARSET = Charset.forName("windows-1252");
+
+    private final TokenTable table;
+    private ByteBuffer data;
+    private int limit;
+    private int i = 0;
+    private TokenRing recycled;
+
+    /**
+     * Reads {@code data} in place; token positions are relative to its position.
+     */
+    public BinaryTokenizer(ByteBuffer data, TokenTable table) {
+        this.table = table;
+        reset(data);
+    }
+
+    /**
+     * The binary counterpart of {@link ByteTokenizer#reusable}: one per worker, pointed at each
+     * document with {@link #reset}, handing out recycled tokens.
+     */
+    public static BinaryTokenizer reusable(TokenTable table) {
+        BinaryTokenizer t = new BinaryTokenizer(ByteBuffer.allocate(0), table);
+        t.recycled = new TokenRing();
+        return t;
+    }
+
+    /**
+     * Starts over on {@code data}, read in place.
+     */
+    public BinaryTokenizer reset(ByteBuffer data) {
+        this.data = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.limit = this.data.limit();
+        this.i = 0;
+        return this;
+    }
+
+    @Override
+    public Token next() {
+        int pos = i;
+        int length = tokenLength(data, pos, limit);
+        if (length < 0) {
+            i = limit;
+            return token(EOF, "", limit);
+        }
+        i += length;
+
+        int id = data.getShort(pos) & 0xFFFF;
+        int p = pos + 2;
+        return switch (id) {
+            case EQUALS_ID -> token(EQUALS, "=", pos);
+            case OPEN_ID -> token(LBRACE, "{", pos);
+            case CLOSE_ID -> token(RBRACE, "}", pos);
+            case I32_ID -> number(data.getInt(p), 0, pos);
+            case U32_ID -> number(data.getInt(p) & 0xFFFF_FFFFL, 0, pos);
+            case F32_ID -> number(data.getInt(p), F32_SCALE, pos);
+            case F64_ID -> number(data.getLong(p), F64_SCALE, pos);
+            case I64_ID -> number(data.getLong(p), 0, pos);
+            case U64_ID -> {
+                long v = data.getLong(p);
+                yield v >= 0 ? number(v, 0, pos) : token(NUMBER, Long.toUnsignedString(v), pos);
+            }
+            case BOOL_ID -> token(IDENT, data.get(p) != 0 ? "yes" : "no", pos);
+            case QUOTED_ID -> token(STRING, string(data, p), pos);
+            case UNQUOTED_ID -> token(IDENT, string(data, p), pos);
+            default -> token(IDENT, name(table, id), pos);
+        };
+    }
+
+    @Override
+    public void skipBlock() {
+        int depth = 1;
+        while (true) {
+            int length = tokenLength(data, i, limit);
+            if (length < 0) {
+                i = limit;
+                return;
+            }
+            int id = data.getShort(i) & 0xFFFF;
+            i += length;
+            if (id == OPEN_ID) {
+                depth++;
+            } else if (id == CLOSE_ID && --depth == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Total length in bytes of the token at {@code pos}, id included, or -1 if it does not fit
+     * before {@code limit}. Works on buffers of either byte order.
+     */
+    public static int tokenLength(ByteBuffer data, int pos, int limit) {
+        if (pos + 2 > limit) return -1;
+        int length = switch (u16(data, pos)) {
+            case I32_ID, U32_ID, F32_ID -> 6;
+            case F64_ID, I64_ID, U64_ID -> 10;
+            case BOOL_ID -> 3;
+            case QUOTED_ID, UNQUOTED_ID -> pos + 4 > limit ? Integer.MAX_VALUE : 4 + u16(data, pos + 2);
+            default -> 2;
+        };
+        return length <= limit - pos ? length : -1;
+    }
+
+    /**
+     * Text of the token at {@code pos} when used as a key: the string for string tokens, the
+     * table name otherwise.
+     */
+    public static String keyText(ByteBuffer data, int pos, TokenTable table) {
+        int id = u16(data, pos);
+        return id == QUOTED_ID || id == UNQUOTED_ID ? string(data, pos + 2) : name(table, id);
+    }
+
+    private Token token(Token.Type type, String text, int pos) {
+        return recycled == null ? new Token(type, text, pos) : recycled.next().reset(type, text, pos);
+    }
+
+    private Token number(long mantissa, int scale, int pos) {
+        return recycled == null ? Token.number(mantissa, scale, pos) : recycled.next().resetNumber(mantissa, scale, pos);
+    }
+
+    public static int u16(ByteBuffer data, int pos) {
+        return (data.get(pos) & 0xFF) | (data.get(pos + 1) & 0xFF) << 8;
+    }
+
+    private static String string(ByteBuffer data, int lengthPos) {
+        int length = u16(data, lengthPos);
+        byte[] bytes = new byte[length];
+        data.get(lengthPos + 2, bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private static String name(TokenTable table, int id) {
+        String name = table.name(id);
+        return name != null ? name : String.format("__unknown_0x%04x", id);
+    }
+}
@@ -0,0 +1,376 @@
+package com.warroom.parser;
+
+import com.warroom.index.StructuralScanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.warroom.parser.Token.Type.*;
+
+/**
+ * Byte-level counterpart of {@link Tokenizer} that pulls tokens straight from a channel,
+ * so a save never has to be held as one String. Only the bytes of the token being read
+ * are kept; the buffer is compacted and reused as the stream advances.
+ *
+ * <p>It can also run directly over bytes that are already in memory, in which case the
+ * buffer is read in place and token positions are relative to its position.
+ */
+public class ByteTokenizer implements TokenSource {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel in;
+    private final Charset charset;
+    private final SymbolTable symbols;
+
+    private ByteBuffer buf;
+    private int i = 0;
+    private int limit = 0;
+    private long base = 0;
+    private boolean eof = false;
+
+    private byte[] scratch = new byte[256];
+    private TokenRing recycled;
+
+    public ByteTokenizer(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    public ByteTokenizer(ReadableByteChannel in) {
+        this(in, StandardCharsets.UTF_8, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ByteTokenizer(ReadableByteChannel in, Charset charset, int bufferSize) {
+        this.in = in;
+        this.charset = charset;
+        this.symbols = new SymbolTable();
+        this.buf = ByteBuffer.allocate(Math.max(16, bufferSize));
+        skipByteOrderMark();
+    }
+
+    public ByteTokenizer(ByteBuffer data) {
+        this(data, StandardCharsets.UTF_8);
+    }
+
+    public ByteTokenizer(ByteBuffer data, Charset charset) {
+        this(data, charset, new SymbolTable());
+    }
+
+    /**
+     * Reads {@code data} in place, interning identifiers into {@code symbols} so that a table can be
+     * shared by consecutive parses on the same thread.
+     */
+    public ByteTokenizer(ByteBuffer data, SymbolTable symbols) {
+        this(data, StandardCharsets.UTF_8, symbols);
+    }
+
+    private ByteTokenizer(ByteBuffer data, Charset charset, SymbolTable symbols) {
+        this.in = null;
+        this.charset = charset;
+        this.symbols = symbols;
+        this.buf = data.slice();
+        this.limit = buf.limit();
+        this.eof = true;
+        skipByteOrderMark();
+    }
+
+    /**
+     * A tokenizer for one worker to point at one in-memory document after another with
+     * {@link #reset}, keeping its buffers and tokens instead of allocating them per document.
+     * Its tokens are recycled: each stays valid only until {@value TokenRing#SIZE} more have
+     * been read, which is enough for {@link ClausewitzReader} but not for collecting them.
+     */
+    public static ByteTokenizer reusable(SymbolTable symbols) {
+        ByteTokenizer t = new ByteTokenizer(ByteBuffer.allocate(0), StandardCharsets.UTF_8, symbols);
+        t.recycled = new TokenRing();
+        return t;
+    }
+
+    /**
+     * Starts over on {@code data}, read in place as by {@link #ByteTokenizer(ByteBuffer)}.
+     *
+     * @throws IllegalStateException if this tokenizer reads from a channel
+     */
+    public ByteTokenizer reset(ByteBuffer data) {
+        if (in != null) throw new IllegalStateException("Only in-memory tokenizers can be reset");
+        buf = data.slice();
+        limit = buf.limit();
+        i = 0;
+        skipByteOrderMark();
+        return this;
+    }
+
+    public List<Token> tokenize() {
+        List<Token> out = new ArrayList<>();
+        while (true) {
+            Token t = next();
+            out.add(t);
+            if (t.type() == EOF) return out;
+        }
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    @Override
+    public Token next() {
+        while (true) {
+            skipWhiteSpace();
+            int c = peek(0);
+            if (c < 0) return token(EOF, "", pos());
+
+            if (c == '{') return single(LBRACE, "{");
+            if (c == '}') return single(RBRACE, "}");
+            if (c == '=') return single(EQUALS, "=");
+            if (c == '"') return readString();
+            if (isNumberStart(c)) return readNumber();
+            if (isIdentStart(c)) return readIdent();
+
+            i++;
+        }
+    }
+
+    @Override
+    public void skipBlock() {
+        int depth = 1;
+        while (true) {
+            i = StructuralScanner.nextStructural(buf, i, limit);
+            int c = peek(0);
+            if (c < 0) return;
+            i++;
+
+            if (c == '"') {
+                while (true) {
+                    i = StructuralScanner.nextQuoteOrEscape(buf, i, limit);
+                    if ((c = peek(0)) < 0) break;
+                    i++;
+                    if (c == '\\') {
+                        if (peek(0) >= 0) i++;
+                    } else if (c == '"') {
+                        break;
+                    }
+                }
+            } else if (c == '#') {
+                while (true) {
+                    i = StructuralScanner.nextNewline(buf, i, limit);
+                    if ((c = peek(0)) < 0 || c == '\n') break;
+                    i++;
+                }
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                if (--depth == 0) return;
+            }
+        }
+    }
+
+    private Token single(Token.Type type, String text) {
+        Token t = token(type, text, pos());
+        i++;
+        return t;
+    }
+
+    private void skipWhiteSpace() {
+        while (true) {
+            int c = peek(0);
+            if (c < 0) return;
+
+            if (c == '#') {
+                while ((c = peek(0)) >= 0 && c != '\n') i++;
+                continue;
+            }
+
+            if (!isWhitespace(c)) return;
+            i++;
+        }
+    }
+
+    private Token readString() {
+        int start = pos();
+        i++;
+
+        int n = 0;
+        while (true) {
+            int c = peek(0);
+            if (c < 0) break;
+            i++;
+
+            if (c == '"') break;
+
+            if (c == '\\') {
+                int next = peek(0);
+                if (next < 0) {
+                    n = append(n, c);
+                    break;
+                }
+                i++;
+                n = append(n, next);
+            } else {
+                n = append(n, c);
+            }
+        }
+
+        return token(STRING, new String(scratch, 0, n, charset), start);
+    }
+
+    /**
+     * Decodes a number in place; see {@link Tokenizer} for which forms keep their source text.
+     */
+    private Token readNumber() {
+        int k = 0;
+        boolean negative = false;
+        if (peek(k) == '-') {
+            negative = true;
+            k++;
+        }
+
+        long mantissa = 0;
+        int scale = 0;
+
+        int intStart = k;
+        int c;
+        while (isDigit(c = peek(k))) {
+            mantissa = mantissa * 10 + (c - '0');
+            k++;
+        }
+        int intDigits = k - intStart;
+        boolean exact = intDigits == 1 || (intDigits > 1 && peek(intStart) != '0');
+
+        if (peek(k) == '.') {
+            k++;
+            int fracStart = k;
+            while (isDigit(c = peek(k))) {
+                mantissa = mantissa * 10 + (c - '0');
+                k++;
+            }
+            scale = k - fracStart;
+            if (scale == 0) exact = false;
+            if (peek(k) == '.' && isDigit(peek(k + 1))) {
+                while (peek(k) == '.' || isDigit(peek(k))) k++;
+                return take(IDENT, k);
+            }
+        }
+        if (intDigits + scale > Token.MAX_SCALE || (negative && mantissa == 0)) exact = false;
+
+        if (!exact) return take(NUMBER, k);
+        long value = negative ? -mantissa : mantissa;
+        Token t = recycled == null ? Token.number(value, scale, pos()) : recycled.next().resetNumber(value, scale, pos());
+        i += k;
+        return t;
+    }
+
+    private Token readIdent() {
+        int k = 0;
+        while (true) {
+            int c = peek(k);
+            if (isLetterOrDigit(c) || c == '_' || c == '.' || c == '-') k++;
+            else break;
+        }
+        return take(IDENT, k);
+    }
+
+    private Token take(Token.Type type, int len) {
+        int start = pos();
+        if (type == IDENT && charset.equals(StandardCharsets.UTF_8)) {
+            String ident = symbols.intern(buf, i, len);
+            i += len;
+            return token(IDENT, ident, start);
+        }
+        if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+        buf.get(i, scratch, 0, len);
+        i += len;
+        return token(type, new String(scratch, 0, len, charset), start);
+    }
+
+    private Token token(Token.Type type, String text, int pos) {
+        return recycled == null ? new Token(type, text, pos) : recycled.next().reset(type, text, pos);
+    }
+
+    private int append(int n, int c) {
+        if (n == scratch.length) scratch = Arrays.copyOf(scratch, n * 2);
+        scratch[n] = (byte) c;
+        return n + 1;
+    }
+
+    private void skipByteOrderMark() {
+        if (peek(0) == 0xEF && peek(1) == 0xBB && peek(2) == 0xBF) i += 3;
+    }
+
+    private int pos() {
+        return (int) (base + i);
+    }
+
+    /**
+     * Returns the unsigned byte at {@code i + k}, reading more input if needed, or -1 at end of stream.
+     * Refilling only ever discards bytes before {@code i}, so offsets relative to the token start stay valid.
+     */
+    private int peek(int k) {
+        while (i + k >= limit) {
+            if (!fill()) return -1;
+        }
+        return buf.get(i + k) & 0xFF;
+    }
+
+    private boolean fill() {
+        if (eof) return false;
+
+        if (i > 0) {
+            System.arraycopy(buf.array(), i, buf.array(), 0, limit - i);
+            base += i;
+            limit -= i;
+            i = 0;
+        }
+        if (limit == buf.capacity()) {
+            buf = ByteBuffer.wrap(Arrays.copyOf(buf.array(), buf.capacity() * 2));
+        }
+
+        try {
+            buf.limit(buf.capacity()).position(limit);
+            int n;
+            do {
+                n = in.read(buf);
+            } while (n == 0);
+            if (n < 0) {
+                eof = true;
+                return false;
+            }
+            limit += n;
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || (c >= 0x09 && c <= 0x0D) || (c >= 0x1C && c <= 0x1F);
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c >= 0x80;
+    }
+
+    private static boolean isLetterOrDigit(int c) {
+        return isLetter(c) || isDigit(c);
+    }
+
+    private static boolean isIdentStart(int c) {
+        return isLetter(c) || c == '_';
+    }
+
+    private static boolean isNumberStart(int c) {
+        return isDigit(c) || c == '-';
+    }
+}
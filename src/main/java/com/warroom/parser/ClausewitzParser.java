@@ -14,85 +14,154 @@ public class ClausewitzParser {
     public record ObjVal(Map<String, Value> map) implements Value {}
     public record ListVal(List<Value> list) implements Value {}
 
-    private final List<Token> tokens;
-    private int p = 0;
+    public static final String ITEMS = "__items";
+
+    private final ClausewitzReader reader;
 
     public ClausewitzParser(List<Token> tokens) {
-        this.tokens = tokens;
+        this(new ClausewitzReader(tokens));
+    }
+
+    public ClausewitzParser(TokenSource source) {
+        this(new ClausewitzReader(source));
+    }
+
+    public ClausewitzParser(ClausewitzReader reader) {
+        this.reader = reader;
     }
 
     public ObjVal parseRoot() {
-        Map<String, Value> root = new LinkedHashMap<>();
-
-        while (!peek(EOF)) {
-            if ((peek(IDENT) || peek(NUMBER)) && peekNext(EQUALS)) {
-                String key = peek(IDENT) ? expect(IDENT).text() : expect(NUMBER).text();
-                expect(EQUALS);
-                try {
-                    Value val = parseValue();
-                    putHandlingDuplicates(root, key, val);
-                } catch (RuntimeException ex) {
-                }
-                continue;
-            }
-            p++;
-        }
-        return new ObjVal(root);
+        return parseRoot(Projection.all());
     }
 
-    private Value parseValue() {
-        if(peek(LBRACE)) return parseObject();
-        if(peek(STRING)) return new StrVal(expect(STRING).text());
-        if(peek(NUMBER)) return new NumVal(Double.parseDouble(expect(NUMBER).text()));
-        if(peek(IDENT)) {
-            String t = expect(IDENT).text();
-            if (t.equalsIgnoreCase("yes")) return new BoolVal(true);
-            if (t.equalsIgnoreCase("no")) return new BoolVal(false);
-            return new StrVal(t);
-        }
-        throw new RuntimeException("Unexpected token: " + current());
+    /**
+     * Parses only the parts of the document selected by {@code projection}; all other values are
+     * skipped without being tokenised into values.
+     */
+    public ObjVal parseRoot(Projection projection) {
+        return parse(projection, new MapTreeBuilder());
+    }
+
+    /**
+     * Same as {@link #parseRoot()} but stores the tree in a {@link CompactTree}: flat primitive arrays
+     * instead of one map entry and one record per value. Values are materialised on access.
+     */
+    public ObjVal parseCompact() {
+        return parseCompact(Projection.all());
     }
 
-    private ObjVal parseObject() {
-        expect(LBRACE);
-        Map<String, Value> obj = new LinkedHashMap<>();
+    public ObjVal parseCompact(Projection projection) {
+        return parse(projection, new CompactTree.Builder());
+    }
 
-        while (!peek(RBRACE)) {
+    /**
+     * Receives the parse as a stream of build steps; keys are null for anonymous values.
+     */
+    interface TreeBuilder {
+        void scalar(String key, Token token);
+        void startObject(String key);
+        void endObject();
+        ObjVal finish();
+    }
 
-            if ((peek(IDENT) || peek(NUMBER)) && peekNext(EQUALS)) {
-                String key = peek(IDENT) ? expect(IDENT).text() : expect(NUMBER).text();
-                expect(EQUALS);
-                try {
-                    Value val = parseValue();
-                    putHandlingDuplicates(obj, key, val);
-                } catch (RuntimeException ex) {
-                    p++;
+    private ObjVal parse(Projection projection, TreeBuilder out) {
+        List<Projection> openProjections = new ArrayList<>();
+
+        String key = null;
+        Projection scope = projection;
+        Projection valueScope = projection;
+
+        while (true) {
+            switch (reader.next()) {
+                case KEY -> {
+                    key = reader.key();
+                    valueScope = scope.child(key);
+                    if (valueScope == null) {
+                        reader.skipValue();
+                        key = null;
+                    }
                 }
-                continue;
-            }
-
-            if (peek(LBRACE) || peek(STRING) || peek(NUMBER) || peek(IDENT)) {
-                try {
-                    Value v = parseValue();
-                    addAnonymous(obj, v);
-                } catch (RuntimeException ex) {
-                    p++;
+                case SCALAR -> {
+                    if (key != null ? valueScope.includesAll() : scope.includesAll()) {
+                        out.scalar(key, reader.scalar());
+                    }
+                    key = null;
+                }
+                case START_OBJECT -> {
+                    if (key == null && !scope.includesAll()) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    out.startObject(key);
+                    openProjections.add(scope);
+                    scope = key != null ? valueScope : scope;
+                    key = null;
+                }
+                case END_OBJECT -> {
+                    out.endObject();
+                    scope = openProjections.remove(openProjections.size() - 1);
+                    key = null;
+                }
+                case END_DOCUMENT -> {
+                    return out.finish();
                 }
-                continue;
             }
+        }
+    }
 
-            p++;
+    private static final class MapTreeBuilder implements TreeBuilder {
+        private final List<Map<String, Value>> openObjects = new ArrayList<>();
+        private final List<String> openKeys = new ArrayList<>();
+        private Map<String, Value> obj = new LinkedHashMap<>();
+
+        @Override
+        public void scalar(String key, Token token) {
+            Value val = scalarValue(token);
+            if (val != null) put(obj, key, val);
         }
 
+        @Override
+        public void startObject(String key) {
+            openObjects.add(obj);
+            openKeys.add(key);
+            obj = new LinkedHashMap<>();
+        }
 
+        @Override
+        public void endObject() {
+            Value done = new ObjVal(obj);
+            obj = openObjects.remove(openObjects.size() - 1);
+            put(obj, openKeys.remove(openKeys.size() - 1), done);
+        }
+
+        @Override
+        public ObjVal finish() {
+            return new ObjVal(obj);
+        }
+    }
 
-        expect(RBRACE);
-        return new ObjVal(obj);
+    static Value scalarValue(Token t) {
+        if (t.type() == STRING) return new StrVal(t.text());
+        if (t.type() == NUMBER) {
+            try {
+                return new NumVal(t.number());
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+        String text = t.text();
+        if (text.equalsIgnoreCase("yes")) return new BoolVal(true);
+        if (text.equalsIgnoreCase("no")) return new BoolVal(false);
+        return new StrVal(text);
     }
 
+    private static void put(Map<String, Value> map, String key, Value val) {
+        if (key == null) addAnonymous(map, val);
+        else putHandlingDuplicates(map, key, val);
+    }
 
-    private void addAnonymous(Map<String, Value> map, Value val) {
-        String key = "__items";
+    private static void addAnonymous(Map<String, Value> map, Value val) {
+        String key = ITEMS;
         Value existing = map.get(key);
 
         if (existing == null) {
@@ -115,7 +184,7 @@ public class ClausewitzParser {
     }
 
 
-    private void putHandlingDuplicates(Map<String, Value> map, String key, Value val) {
+    private static void putHandlingDuplicates(Map<String, Value> map, String key, Value val) {
         Value existing = map.get(key);
 
         if (existing == null) {
@@ -133,27 +202,4 @@ public class ClausewitzParser {
         list.add(val);
         map.put(key, new ListVal(list));
     }
-
-
-    private Token expect(Token.Type type) {
-        Token t = current();
-        if (t.type() != type) {
-            throw new RuntimeException("Expected " + type + " but got " + t.type() + " at pos " + t.pos());
-        }
-        p++;
-        return t;
-    }
-
-    private boolean peek(Token.Type type) {
-        return current().type() == type;
-    }
-
-    private boolean peekNext(Token.Type type) {
-        if (p + 1 >= tokens.size()) return false;
-        return tokens.get(p + 1).type() == type;
-    }
-
-    private Token current() {
-        return tokens.get(Math.min(p, tokens.size() - 1));
-    }
 }
@@ -0,0 +1,275 @@
+package com.warroom.parser;
+
+import com.warroom.parser.ClausewitzParser.BoolVal;
+import com.warroom.parser.ClausewitzParser.ListVal;
+import com.warroom.parser.ClausewitzParser.NumVal;
+import com.warroom.parser.ClausewitzParser.ObjVal;
+import com.warroom.parser.ClausewitzParser.StrVal;
+import com.warroom.parser.ClausewitzParser.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * A lookup path compiled once and evaluated many times, returning primitives instead of
+ * {@code Optional}s.
+ *
+ * <p>Syntax: keys separated by dots; {@code *} matches every key of an object; {@code [n]}
+ * selects the n-th element of a list and {@code [*]} every element, e.g.
+ * {@code equipment_market.market_stockpile.equipments.equipment[*].amount}. A key applied to a
+ * list of duplicates applies to each element, and an index applied to a single value treats it as
+ * a one-element list, matching how the parser represents repeated keys.
+ *
+ * <p>Instances are immutable and thread-safe.
+ */
+public final class ClausewitzPath {
+
+    private static final int KEY = 0;
+    private static final int ANY_KEY = 1;
+    private static final int INDEX = 2;
+    private static final int ANY_INDEX = 3;
+
+    private final String source;
+    private final int[] kinds;
+    private final String[] keys;
+    private final int[] indices;
+
+    private ClausewitzPath(String source, int[] kinds, String[] keys, int[] indices) {
+        this.source = source;
+        this.kinds = kinds;
+        this.keys = keys;
+        this.indices = indices;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the path is malformed
+     */
+    public static ClausewitzPath compile(String path) {
+        List<Integer> kinds = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+
+        int i = 0;
+        int n = path.length();
+        boolean expectSegment = true;
+        while (i < n) {
+            char c = path.charAt(i);
+            if (c == '[') {
+                int close = path.indexOf(']', i);
+                if (close < 0) throw new IllegalArgumentException("Unclosed '[' in path: " + path);
+                String inside = path.substring(i + 1, close).trim();
+                if (inside.equals("*")) {
+                    kinds.add(ANY_INDEX);
+                    indices.add(-1);
+                } else {
+                    int index;
+                    try {
+                        index = Integer.parseInt(inside);
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Bad list index '" + inside + "' in path: " + path);
+                    }
+                    if (index < 0) throw new IllegalArgumentException("Negative list index in path: " + path);
+                    kinds.add(INDEX);
+                    indices.add(index);
+                }
+                keys.add(null);
+                i = close + 1;
+                expectSegment = false;
+            } else if (c == '.') {
+                if (expectSegment) throw new IllegalArgumentException("Empty segment in path: " + path);
+                i++;
+                expectSegment = true;
+            } else {
+                if (!expectSegment) throw new IllegalArgumentException("Missing '.' in path: " + path);
+                int end = i;
+                while (end < n && path.charAt(end) != '.' && path.charAt(end) != '[') end++;
+                String key = path.substring(i, end);
+                kinds.add(key.equals("*") ? ANY_KEY : KEY);
+                keys.add(key.equals("*") ? null : key);
+                indices.add(-1);
+                i = end;
+                expectSegment = false;
+            }
+        }
+        if (expectSegment && !kinds.isEmpty()) throw new IllegalArgumentException("Trailing '.' in path: " + path);
+
+        int[] k = new int[kinds.size()];
+        int[] idx = new int[kinds.size()];
+        for (int s = 0; s < k.length; s++) {
+            k[s] = kinds.get(s);
+            idx[s] = indices.get(s);
+        }
+        return new ClausewitzPath(path, k, keys.toArray(new String[0]), idx);
+    }
+
+    /**
+     * First value the path selects, in document order, or null.
+     */
+    public Value get(ObjVal root) {
+        return first(root, 0);
+    }
+
+    public double getDouble(ObjVal root, double fallback) {
+        if (isSimple()) {
+            ObjVal parent = parentOfLast(root);
+            if (parent != null && parent.map() instanceof CompactTree.ObjectMap compact) {
+                return compact.getDouble(keys[keys.length - 1], fallback);
+            }
+        }
+        return get(root) instanceof NumVal(double v) ? v : fallback;
+    }
+
+    public String getString(ObjVal root, String fallback) {
+        return switch (get(root)) {
+            case StrVal(String s) -> s;
+            case NumVal(double d) -> String.valueOf(d);
+            case BoolVal(boolean b) -> String.valueOf(b);
+            case null, default -> fallback;
+        };
+    }
+
+    public boolean getBoolean(ObjVal root, boolean fallback) {
+        return get(root) instanceof BoolVal(boolean b) ? b : fallback;
+    }
+
+    /**
+     * Every value the path selects, in document order. Unlike {@link #get}, a repeated last key
+     * yields each occurrence rather than the list holding them.
+     */
+    public void forEach(ObjVal root, Consumer<Value> action) {
+        all(root, 0, action);
+    }
+
+    public List<Value> getAll(ObjVal root) {
+        List<Value> out = new ArrayList<>();
+        forEach(root, out::add);
+        return out;
+    }
+
+    /**
+     * Every number the path selects; other values are ignored.
+     */
+    public void forEachDouble(ObjVal root, DoubleConsumer action) {
+        forEach(root, v -> {
+            if (v instanceof NumVal(double d)) action.accept(d);
+        });
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private boolean isSimple() {
+        for (int kind : kinds) {
+            if (kind != KEY) return false;
+        }
+        return kinds.length > 0;
+    }
+
+    /**
+     * For a path of plain keys, the object holding the last key, or null if the walk reaches
+     * anything but a single object on the way.
+     */
+    private ObjVal parentOfLast(ObjVal root) {
+        ObjVal cur = root;
+        for (int s = 0; s < kinds.length - 1; s++) {
+            if (!(cur.map().get(keys[s]) instanceof ObjVal o)) return null;
+            cur = o;
+        }
+        return cur;
+    }
+
+    private Value first(Value cur, int step) {
+        if (cur == null) return null;
+        if (step == kinds.length) return cur;
+
+        switch (kinds[step]) {
+            case KEY -> {
+                if (cur instanceof ObjVal o) return first(o.map().get(keys[step]), step + 1);
+                if (cur instanceof ListVal l) {
+                    for (Value item : l.list()) {
+                        Value found = first(item, step);
+                        if (found != null) return found;
+                    }
+                }
+                return null;
+            }
+            case ANY_KEY -> {
+                if (cur instanceof ObjVal o) {
+                    for (Value child : o.map().values()) {
+                        Value found = child instanceof ListVal l ? firstOfEach(l, step + 1) : first(child, step + 1);
+                        if (found != null) return found;
+                    }
+                } else if (cur instanceof ListVal l) {
+                    for (Value item : l.list()) {
+                        Value found = first(item, step);
+                        if (found != null) return found;
+                    }
+                }
+                return null;
+            }
+            case INDEX -> {
+                int index = indices[step];
+                if (cur instanceof ListVal l) return index < l.list().size() ? first(l.list().get(index), step + 1) : null;
+                return index == 0 ? first(cur, step + 1) : null;
+            }
+            default -> {
+                return cur instanceof ListVal l ? firstOfEach(l, step + 1) : first(cur, step + 1);
+            }
+        }
+    }
+
+    private Value firstOfEach(ListVal l, int step) {
+        for (Value item : l.list()) {
+            Value found = first(item, step);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    private void all(Value cur, int step, Consumer<Value> action) {
+        if (cur == null) return;
+        if (step == kinds.length) {
+            action.accept(cur);
+            return;
+        }
+        if (step == kinds.length - 1 && kinds[step] == KEY && cur instanceof ObjVal o) {
+            Value last = o.map().get(keys[step]);
+            if (last instanceof ListVal l && !keys[step].equals(ClausewitzParser.ITEMS)) l.list().forEach(action);
+            else if (last != null) action.accept(last);
+            return;
+        }
+
+        switch (kinds[step]) {
+            case KEY -> {
+                if (cur instanceof ObjVal o) all(o.map().get(keys[step]), step + 1, action);
+                else if (cur instanceof ListVal l) for (Value item : l.list()) all(item, step, action);
+            }
+            case ANY_KEY -> {
+                if (cur instanceof ObjVal o) {
+                    for (Value child : o.map().values()) {
+                        if (child instanceof ListVal l) for (Value item : l.list()) all(item, step + 1, action);
+                        else all(child, step + 1, action);
+                    }
+                } else if (cur instanceof ListVal l) {
+                    for (Value item : l.list()) all(item, step, action);
+                }
+            }
+            case INDEX -> {
+                int index = indices[step];
+                if (cur instanceof ListVal l) {
+                    if (index < l.list().size()) all(l.list().get(index), step + 1, action);
+                } else if (index == 0) {
+                    all(cur, step + 1, action);
+                }
+            }
+            default -> {
+                if (cur instanceof ListVal l) for (Value item : l.list()) all(item, step + 1, action);
+                else all(cur, step + 1, action);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.warroom.parser;
+
+import java.util.List;
+
+import static com.warroom.parser.Token.Type.*;
+
+/**
+ * Pull-style reader over a token stream, in the spirit of a StAX reader: each call to
+ * {@link #next()} consumes just enough tokens to report the next structural event.
+ *
+ * <p>Inside an object, {@code KEY} is followed by exactly one value event (a {@code SCALAR}
+ * or a {@code START_OBJECT}); values without a preceding {@code KEY} are anonymous list items.
+ * Objects left open at end of input are closed implicitly.
+ */
+public class ClausewitzReader {
+
+    public enum Event { START_OBJECT, END_OBJECT, KEY, SCALAR, END_DOCUMENT }
+
+    private final TokenSource source;
+
+    private final Token[] ahead = new Token[3];
+    private int aheadStart = 0;
+    private int aheadCount = 0;
+
+    private int depth = 0;
+    private boolean valuePending = false;
+    private Event last;
+    private String key;
+    private Token scalar;
+    private long values = 0;
+
+    public ClausewitzReader(TokenSource source) {
+        this.source = source;
+    }
+
+    public ClausewitzReader(List<Token> tokens) {
+        this(TokenSource.of(tokens));
+    }
+
+    public Event next() {
+        return last = advance();
+    }
+
+    /**
+     * Skips the value announced by the last {@code KEY} event, or the rest of the object opened by the
+     * last {@code START_OBJECT} event (whose {@code END_OBJECT} is then not reported). Braces are matched
+     * by the token source directly, so nothing inside the skipped block is materialised.
+     */
+    public void skipValue() {
+        if (valuePending) {
+            valuePending = false;
+            if (take().type() == LBRACE) skipObjectBody();
+        } else if (last == Event.START_OBJECT) {
+            depth--;
+            skipObjectBody();
+        } else {
+            throw new IllegalStateException("skipValue() must follow KEY or START_OBJECT, not " + last);
+        }
+        last = null;
+    }
+
+    private Event advance() {
+        if (valuePending) {
+            valuePending = false;
+            return value(take());
+        }
+
+        while (true) {
+            Token t = peek(0);
+
+            if (t.type() == EOF) {
+                if (depth > 0) {
+                    depth--;
+                    return Event.END_OBJECT;
+                }
+                return Event.END_DOCUMENT;
+            }
+
+            if (t.type() == RBRACE) {
+                take();
+                if (depth > 0) {
+                    depth--;
+                    return Event.END_OBJECT;
+                }
+                continue;
+            }
+
+            if ((t.type() == IDENT || t.type() == NUMBER) && peek(1).type() == EQUALS) {
+                take();
+                take();
+                if (!isValueStart(peek(0))) continue;
+
+                key = t.text();
+                valuePending = true;
+                return Event.KEY;
+            }
+
+            if (depth > 0 && isValueStart(t)) {
+                return value(take());
+            }
+
+            take();
+        }
+    }
+
+    /**
+     * Key reported by the last {@code KEY} event.
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Token of the last {@code SCALAR} event: a STRING, NUMBER or IDENT.
+     */
+    public Token scalar() {
+        return scalar;
+    }
+
+    /**
+     * Number of currently open objects.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Number of values reported so far: scalars, objects and anonymous items, not counting
+     * anything inside skipped values.
+     */
+    public long valueCount() {
+        return values;
+    }
+
+    private Event value(Token t) {
+        values++;
+        if (t.type() == LBRACE) {
+            depth++;
+            return Event.START_OBJECT;
+        }
+        scalar = t;
+        return Event.SCALAR;
+    }
+
+    private void skipObjectBody() {
+        int nest = 1;
+        while (aheadCount > 0 && nest > 0) {
+            switch (take().type()) {
+                case LBRACE -> nest++;
+                case RBRACE -> nest--;
+                case EOF -> { return; }
+                default -> { }
+            }
+        }
+        while (nest-- > 0) source.skipBlock();
+    }
+
+    private static boolean isValueStart(Token t) {
+        return switch (t.type()) {
+            case LBRACE, STRING, NUMBER, IDENT -> true;
+            default -> false;
+        };
+    }
+
+    private Token peek(int k) {
+        while (aheadCount <= k) {
+            ahead[(aheadStart + aheadCount) % ahead.length] = source.next();
+            aheadCount++;
+        }
+        return ahead[(aheadStart + k) % ahead.length];
+    }
+
+    private Token take() {
+        Token t = peek(0);
+        ahead[aheadStart] = null;
+        aheadStart = (aheadStart + 1) % ahead.length;
+        aheadCount--;
+        return t;
+    }
+}
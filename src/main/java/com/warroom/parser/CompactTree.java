@@ -0,0 +1,436 @@
+package com.warroom.parser;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static com.warroom.parser.ClausewitzParser.*;
+
+/**
+ * A parsed document stored as flat arrays instead of nested maps and records.
+ *
+ * <p>Every key/value pair is one entry: a key id, a type tag and a 64-bit slot holding the number's
+ * bits, the boolean, a string index or a child object id. An object is a contiguous run of
+ * entries, so a numeric list such as {@code { 1 2 3 }} is just a run of primitive slots.
+ * {@link #root()} exposes the usual {@link ObjVal} API through read-only map views that create
+ * values on access, with duplicate keys and anonymous items still surfacing as {@link ListVal}s.
+ * {@link #numericItems} reads such a list as a flat {@code double[]} instead, and {@link #treeOf}
+ * and {@link #objectId} identify an object independently of the view that reached it.
+ */
+public final class CompactTree {
+
+    static final byte NUM = 0;
+    static final byte BOOL = 1;
+    static final byte STR = 2;
+    static final byte OBJ = 3;
+
+    private final String[] keyNames;
+    private final Map<String, Integer> keyIds;
+    private final int itemsKey;
+
+    private final int[] keys;
+    private final byte[] tags;
+    private final long[] slots;
+    private final int[] objStart;
+    private final int[] objEnd;
+    private final String[] strings;
+    private final int rootObj;
+
+    // Key indexes of the objects looked up so far, by object id; created on first need.
+    private KeyIndex[] indexes;
+
+    private CompactTree(Builder b) {
+        this.keyNames = b.keyNames.toArray(new String[0]);
+        this.keyIds = b.keyIds;
+        this.itemsKey = b.itemsKey;
+        this.keys = Arrays.copyOf(b.keys, b.entries);
+        this.tags = Arrays.copyOf(b.tags, b.entries);
+        this.slots = Arrays.copyOf(b.slots, b.entries);
+        this.objStart = Arrays.copyOf(b.objStart, b.objects);
+        this.objEnd = Arrays.copyOf(b.objEnd, b.objects);
+        this.strings = b.strings.toArray(new String[0]);
+        this.rootObj = b.objects - 1;
+    }
+
+    public ObjVal root() {
+        return new ObjVal(new ObjectMap(rootObj));
+    }
+
+    public int entryCount() {
+        return keys.length;
+    }
+
+    public int objectCount() {
+        return objStart.length;
+    }
+
+    /**
+     * The tree {@code v} is a view of, or null if {@code v} is not backed by a compact tree.
+     */
+    public static CompactTree treeOf(ObjVal v) {
+        return v.map() instanceof CompactTree.ObjectMap m ? m.tree() : null;
+    }
+
+    /**
+     * Id of the object {@code v} views, the same for every view of it; {@code v} must be backed by
+     * a compact tree.
+     */
+    public static int objectId(ObjVal v) {
+        return ((CompactTree.ObjectMap) v.map()).obj;
+    }
+
+    /**
+     * The anonymous items of {@code v} read straight from their slots, e.g. a province list
+     * {@code { 1 2 3 }}, without creating a value per number. Null if {@code v} is not backed by a
+     * compact tree or has an item that is not a number; empty if it has no items.
+     */
+    public static double[] numericItems(ObjVal v) {
+        return v.map() instanceof CompactTree.ObjectMap m ? m.numericItems() : null;
+    }
+
+    private Value value(int e) {
+        long slot = slots[e];
+        return switch (tags[e]) {
+            case NUM -> new NumVal(Double.longBitsToDouble(slot));
+            case BOOL -> new BoolVal(slot != 0);
+            case STR -> new StrVal(strings[(int) slot]);
+            default -> new ObjVal(new ObjectMap((int) slot));
+        };
+    }
+
+    /**
+     * Read-only view of one object. Small objects are looked up by scanning their entry run; larger
+     * ones get a {@link KeyIndex} on first use, so lookups stay O(1) and iteration stays linear.
+     */
+    final class ObjectMap extends AbstractMap<String, Value> {
+        private static final int SCAN_LIMIT = 8;
+
+        private final int obj;
+
+        ObjectMap(int obj) {
+            this.obj = obj;
+        }
+
+        @Override
+        public Value get(Object key) {
+            Integer id = keyIds.get(key);
+            return id == null ? null : valueOf(id);
+        }
+
+        /**
+         * The number under {@code key} without creating a value, or {@code fallback} if the key is
+         * missing, repeated or not a number.
+         */
+        double getDouble(String key, double fallback) {
+            Integer id = keyIds.get(key);
+            if (id == null || id == itemsKey) return fallback;
+            int e = first(id);
+            if (e < 0 || next(e, id) >= 0) return fallback;
+            return tags[e] == NUM ? Double.longBitsToDouble(slots[e]) : fallback;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            Integer id = keyIds.get(key);
+            return id != null && first(id) >= 0;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return objStart[obj] == objEnd[obj];
+        }
+
+        @Override
+        public int size() {
+            return index().order.length;
+        }
+
+        private Value valueOf(int id) {
+            int first = first(id);
+            if (first < 0) return null;
+            int second = next(first, id);
+            if (second < 0 && id != itemsKey) return value(first);
+
+            List<Value> list = new ArrayList<>();
+            list.add(value(first));
+            for (int e = second; e >= 0; e = next(e, id)) list.add(value(e));
+            return new ListVal(list);
+        }
+
+        /**
+         * First entry with key {@code id}, or -1.
+         */
+        private int first(int id) {
+            if (objEnd[obj] - objStart[obj] > SCAN_LIMIT) return index().first(id);
+            for (int e = objStart[obj]; e < objEnd[obj]; e++) {
+                if (keys[e] == id) return e;
+            }
+            return -1;
+        }
+
+        /**
+         * Next entry after {@code e} with the same key {@code id}, or -1.
+         */
+        private int next(int e, int id) {
+            KeyIndex[] all = indexes;
+            if (all != null && all[obj] != null) return all[obj].next[e - objStart[obj]];
+            for (e++; e < objEnd[obj]; e++) {
+                if (keys[e] == id) return e;
+            }
+            return -1;
+        }
+
+        /**
+         * This object's index, built once per tree rather than per view. Racing threads may both
+         * build it; either copy is complete, as its fields are final.
+         */
+        private KeyIndex index() {
+            KeyIndex[] all = indexes;
+            if (all == null) indexes = all = new KeyIndex[objStart.length];
+            KeyIndex ix = all[obj];
+            if (ix == null) all[obj] = ix = new KeyIndex(keys, objStart[obj], objEnd[obj]);
+            return ix;
+        }
+
+        private CompactTree tree() {
+            return CompactTree.this;
+        }
+
+        private double[] numericItems() {
+            int first = first(itemsKey);
+            int n = 0;
+            for (int e = first; e >= 0; e = next(e, itemsKey)) {
+                if (tags[e] != NUM) return null;
+                n++;
+            }
+            double[] out = new double[n];
+            int k = 0;
+            for (int e = first; e >= 0; e = next(e, itemsKey)) out[k++] = Double.longBitsToDouble(slots[e]);
+            return out;
+        }
+
+        @Override
+        public Set<Entry<String, Value>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Value>> iterator() {
+                    KeyIndex ix = index();
+                    return new Iterator<>() {
+                        private int k = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return k < ix.order.length;
+                        }
+
+                        @Override
+                        public Entry<String, Value> next() {
+                            if (!hasNext()) throw new NoSuchElementException();
+                            int id = ix.order[k++];
+                            return new SimpleImmutableEntry<>(keyNames[id], valueOf(id));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ObjectMap.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Where each key of one object's entry run {@code [start, end)} occurs: the distinct key ids in
+     * order of first appearance, an open-addressed table from key id to its first entry, and for
+     * every entry the next one with the same key.
+     */
+    private static final class KeyIndex {
+        final int[] order;
+        final int[] next;
+        private final int[] tableKeys;
+        private final int[] tableFirst;
+        private final int shift;
+
+        KeyIndex(int[] keys, int start, int end) {
+            int n = end - start;
+            int capacity = Integer.highestOneBit(Math.max(n, 1) * 2 + 1);
+            tableKeys = new int[capacity];
+            tableFirst = new int[capacity];
+            shift = Integer.numberOfLeadingZeros(capacity) + 1;
+            Arrays.fill(tableKeys, -1);
+            next = new int[n];
+            Arrays.fill(next, -1);
+
+            int[] last = new int[capacity];
+            int[] distinct = new int[n];
+            int count = 0;
+            for (int e = start; e < end; e++) {
+                int slot = slot(keys[e]);
+                if (tableKeys[slot] < 0) {
+                    tableKeys[slot] = keys[e];
+                    tableFirst[slot] = e;
+                    distinct[count++] = keys[e];
+                } else {
+                    next[last[slot] - start] = e;
+                }
+                last[slot] = e;
+            }
+            order = Arrays.copyOf(distinct, count);
+        }
+
+        int first(int id) {
+            int slot = slot(id);
+            return tableKeys[slot] < 0 ? -1 : tableFirst[slot];
+        }
+
+        private int slot(int id) {
+            int mask = tableKeys.length - 1;
+            int slot = (id * 0x9E37_79B9) >>> shift;
+            while (tableKeys[slot] >= 0 && tableKeys[slot] != id) slot = (slot + 1) & mask;
+            return slot;
+        }
+    }
+
+    static final class Builder implements ClausewitzParser.TreeBuilder {
+        private final List<String> keyNames = new ArrayList<>();
+        private final Map<String, Integer> keyIds = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final int itemsKey;
+
+        private int[] keys = new int[256];
+        private byte[] tags = new byte[256];
+        private long[] slots = new long[256];
+        private int entries = 0;
+
+        private int[] objStart = new int[64];
+        private int[] objEnd = new int[64];
+        private int objects = 0;
+
+        // Entries of the objects still open, innermost last; moved to the final arrays on close.
+        private int[] pendingKeys = new int[256];
+        private byte[] pendingTags = new byte[256];
+        private long[] pendingSlots = new long[256];
+        private int pending = 0;
+
+        private int[] frames = new int[32];
+        private int[] frameKeys = new int[32];
+        private int depth = 0;
+
+        Builder() {
+            itemsKey = keyId(ITEMS);
+        }
+
+        @Override
+        public void scalar(String key, Token token) {
+            switch (token.type()) {
+                case NUMBER -> {
+                    double v;
+                    try {
+                        v = token.number();
+                    } catch (NumberFormatException ex) {
+                        return;
+                    }
+                    push(key(key), NUM, Double.doubleToRawLongBits(v));
+                }
+                case STRING -> push(key(key), STR, string(token.text()));
+                default -> {
+                    String text = token.text();
+                    if (text.equalsIgnoreCase("yes")) push(key(key), BOOL, 1);
+                    else if (text.equalsIgnoreCase("no")) push(key(key), BOOL, 0);
+                    else push(key(key), STR, string(text));
+                }
+            }
+        }
+
+        @Override
+        public void startObject(String key) {
+            if (depth == frames.length) {
+                frames = Arrays.copyOf(frames, depth * 2);
+                frameKeys = Arrays.copyOf(frameKeys, depth * 2);
+            }
+            frames[depth] = pending;
+            frameKeys[depth] = key(key);
+            depth++;
+        }
+
+        @Override
+        public void endObject() {
+            depth--;
+            int obj = close(frames[depth]);
+            push(frameKeys[depth], OBJ, obj);
+        }
+
+        @Override
+        public ObjVal finish() {
+            while (depth > 0) endObject();
+            close(0);
+            return new CompactTree(this).root();
+        }
+
+        private int close(int from) {
+            int n = pending - from;
+            ensureEntries(entries + n);
+            System.arraycopy(pendingKeys, from, keys, entries, n);
+            System.arraycopy(pendingTags, from, tags, entries, n);
+            System.arraycopy(pendingSlots, from, slots, entries, n);
+
+            if (objects == objStart.length) {
+                objStart = Arrays.copyOf(objStart, objects * 2);
+                objEnd = Arrays.copyOf(objEnd, objects * 2);
+            }
+            objStart[objects] = entries;
+            objEnd[objects] = entries + n;
+            entries += n;
+            pending = from;
+            return objects++;
+        }
+
+        private void push(int key, byte tag, long slot) {
+            if (pending == pendingKeys.length) {
+                int size = pending * 2;
+                pendingKeys = Arrays.copyOf(pendingKeys, size);
+                pendingTags = Arrays.copyOf(pendingTags, size);
+                pendingSlots = Arrays.copyOf(pendingSlots, size);
+            }
+            pendingKeys[pending] = key;
+            pendingTags[pending] = tag;
+            pendingSlots[pending] = slot;
+            pending++;
+        }
+
+        private void ensureEntries(int size) {
+            if (size <= keys.length) return;
+            int next = Math.max(size, keys.length * 2);
+            keys = Arrays.copyOf(keys, next);
+            tags = Arrays.copyOf(tags, next);
+            slots = Arrays.copyOf(slots, next);
+        }
+
+        private int key(String key) {
+            return key == null ? itemsKey : keyId(key);
+        }
+
+        private int keyId(String key) {
+            Integer id = keyIds.get(key);
+            if (id == null) {
+                id = keyNames.size();
+                keyNames.add(key);
+                keyIds.put(key, id);
+            }
+            return id;
+        }
+
+        private long string(String s) {
+            strings.add(s);
+            return strings.size() - 1;
+        }
+    }
+}
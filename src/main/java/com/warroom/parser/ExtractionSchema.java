@@ -0,0 +1,412 @@
+package com.warroom.parser;
+
+import com.warroom.parser.ClausewitzParser.BoolVal;
+import com.warroom.parser.ClausewitzParser.ListVal;
+import com.warroom.parser.ClausewitzParser.NumVal;
+import com.warroom.parser.ClausewitzParser.ObjVal;
+import com.warroom.parser.ClausewitzParser.StrVal;
+import com.warroom.parser.ClausewitzParser.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collector;
+
+import static com.warroom.parser.ClausewitzParser.ITEMS;
+
+/**
+ * A fixed set of fields pulled out of one object in a single pass, either straight from a
+ * {@link ClausewitzReader} or from an already parsed tree.
+ *
+ * <p>Every field is a path relative to the object. Paths are dot-separated keys where {@code *}
+ * matches any one key and {@code **} any number of keys, including none; anonymous list items
+ * match {@code *} and {@code **}. Scalar fields take a list of alternative paths and yield the
+ * value of the first path that has one; within one path the first occurrence wins. Row fields
+ * select objects, read a few numeric columns from each and fold the rows with a
+ * {@link Collector}.
+ *
+ * <p>All paths advance together while the input is read, and any value no path can reach is
+ * skipped unread, so adding a field does not add a pass. Schemas are immutable and thread-safe.
+ */
+public final class ExtractionSchema {
+
+    private static final String ANY = "*";
+    private static final String ANY_DEPTH = "**";
+
+    private static final int NUMBER = 0;
+    private static final int STRING = 1;
+    private static final int BOOLEAN = 2;
+    private static final int ROWS = 3;
+
+    private static final int SCALAR_RULE = 0;
+    private static final int ROW_RULE = 1;
+    private static final int COLUMN_RULE = 2;
+
+    /**
+     * One output of a schema; use it to read the value back from a {@link Result}.
+     */
+    public static final class Field<T> {
+        private final int kind;
+        private final String[][] paths;
+        private final String[][] columns;
+        private final Collector<double[], Object, T> reducer;
+
+        private Field(int kind, String[][] paths, String[][] columns, Collector<double[], Object, T> reducer) {
+            this.kind = kind;
+            this.paths = paths;
+            this.columns = columns;
+            this.reducer = reducer;
+        }
+    }
+
+    public static Field<Double> number(String... paths) {
+        return new Field<>(NUMBER, compileAll(paths), null, null);
+    }
+
+    /**
+     * Strings as they are; numbers and booleans in their {@code String.valueOf} form.
+     */
+    public static Field<String> string(String... paths) {
+        return new Field<>(STRING, compileAll(paths), null, null);
+    }
+
+    public static Field<Boolean> bool(String... paths) {
+        return new Field<>(BOOLEAN, compileAll(paths), null, null);
+    }
+
+    /**
+     * Each object at {@code path} becomes a row holding the numbers at {@code columns}, relative to
+     * that object, with NaN where there is none. Rows are passed to {@code reducer} in document
+     * order once their object has been read.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Field<T> rows(String path, List<String> columns, Collector<double[], ?, T> reducer) {
+        return new Field<>(ROWS, new String[][] {compile(path)},
+                compileAll(columns.toArray(new String[0])), (Collector<double[], Object, T>) reducer);
+    }
+
+    /**
+     * Values read by one evaluation; a field without a value is null.
+     */
+    public static final class Result {
+        private final ExtractionSchema schema;
+        private final Object[] values;
+
+        private Result(ExtractionSchema schema, Object[] values) {
+            this.schema = schema;
+            this.values = values;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T get(Field<T> field) {
+            Integer i = schema.indexOf.get(field);
+            if (i == null) throw new IllegalArgumentException("Field is not part of this schema");
+            return (T) values[i];
+        }
+    }
+
+    private final Field<?>[] fields;
+    private final Map<Field<?>, Integer> indexOf = new IdentityHashMap<>();
+
+    // One rule per path: a scalar alternative, a row path or a row column.
+    private final String[][] ruleSegments;
+    private final int[] ruleKind;
+    private final int[] ruleField;
+    private final int[] ruleSlot;
+    private final int[][] columnRules;
+
+    private ExtractionSchema(Field<?>[] fields) {
+        this.fields = fields.clone();
+
+        List<String[]> segments = new ArrayList<>();
+        List<int[]> meta = new ArrayList<>();
+        columnRules = new int[fields.length][];
+        for (int f = 0; f < fields.length; f++) {
+            Field<?> field = fields[f];
+            if (indexOf.put(field, f) != null) throw new IllegalArgumentException("Field listed twice");
+            for (int a = 0; a < field.paths.length; a++) {
+                segments.add(field.paths[a]);
+                meta.add(new int[] {field.kind == ROWS ? ROW_RULE : SCALAR_RULE, f, a});
+            }
+            if (field.kind == ROWS) {
+                columnRules[f] = new int[field.columns.length];
+                for (int c = 0; c < field.columns.length; c++) {
+                    columnRules[f][c] = segments.size();
+                    segments.add(field.columns[c]);
+                    meta.add(new int[] {COLUMN_RULE, f, c});
+                }
+            }
+        }
+
+        ruleSegments = segments.toArray(new String[0][]);
+        ruleKind = new int[meta.size()];
+        ruleField = new int[meta.size()];
+        ruleSlot = new int[meta.size()];
+        for (int r = 0; r < meta.size(); r++) {
+            ruleKind[r] = meta.get(r)[0];
+            ruleField[r] = meta.get(r)[1];
+            ruleSlot[r] = meta.get(r)[2];
+        }
+    }
+
+    public static ExtractionSchema of(Field<?>... fields) {
+        return new ExtractionSchema(fields);
+    }
+
+    /**
+     * Reads from the reader's current position to the end of the enclosing object, or of the
+     * document at top level. Typically called right after the object's {@code START_OBJECT}.
+     */
+    public Result evaluate(ClausewitzReader reader) {
+        Run run = new Run();
+        run.read(reader, 0);
+        return run.finish();
+    }
+
+    public Result evaluate(ObjVal object) {
+        Run run = new Run();
+        run.walk(object, 0);
+        return run.finish();
+    }
+
+    private static String[][] compileAll(String[] paths) {
+        if (paths.length == 0) throw new IllegalArgumentException("A field needs at least one path");
+        String[][] out = new String[paths.length][];
+        for (int i = 0; i < paths.length; i++) out[i] = compile(paths[i]);
+        return out;
+    }
+
+    private static String[] compile(String path) {
+        String[] segments = path.split("\\.", -1);
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].isEmpty()) throw new IllegalArgumentException("Empty segment in path: " + path);
+            if (segments[i].equals(ANY)) segments[i] = ANY;
+            else if (segments[i].equals(ANY_DEPTH)) segments[i] = ANY_DEPTH;
+        }
+        if (segments[segments.length - 1] == ANY_DEPTH) {
+            throw new IllegalArgumentException("Path must not end with '**': " + path);
+        }
+        return segments;
+    }
+
+    /**
+     * An object opened for a row field, collecting its columns.
+     */
+    private static final class Row {
+        final int field;
+        final double[] values;
+
+        Row(int field, int columns) {
+            this.field = field;
+            this.values = new double[columns];
+            Arrays.fill(values, Double.NaN);
+        }
+    }
+
+    /**
+     * The rule positions live at one depth: {@code pos == length} means the value at this depth is
+     * what the rule selects.
+     */
+    private static final class Level {
+        int[] rule = new int[16];
+        int[] pos = new int[16];
+        Row[] row = new Row[16];
+        int n;
+        final List<Row> opened = new ArrayList<>();
+
+        void clear() {
+            n = 0;
+            opened.clear();
+        }
+
+        void add(int r, int p, Row rw) {
+            for (int i = 0; i < n; i++) {
+                if (rule[i] == r && pos[i] == p && row[i] == rw) return;
+            }
+            if (n == rule.length) {
+                rule = Arrays.copyOf(rule, n * 2);
+                pos = Arrays.copyOf(pos, n * 2);
+                row = Arrays.copyOf(row, n * 2);
+            }
+            rule[n] = r;
+            pos[n] = p;
+            row[n] = rw;
+            n++;
+        }
+    }
+
+    private final class Run {
+        private final List<Level> levels = new ArrayList<>();
+        private final Object[] values = new Object[fields.length];
+        private final int[] bestAlternative = new int[fields.length];
+        private final Object[] accumulators = new Object[fields.length];
+
+        Run() {
+            Arrays.fill(bestAlternative, Integer.MAX_VALUE);
+            for (int f = 0; f < fields.length; f++) {
+                if (fields[f].kind == ROWS) accumulators[f] = fields[f].reducer.supplier().get();
+            }
+            Level top = level(0);
+            for (int r = 0; r < ruleKind.length; r++) {
+                if (ruleKind[r] != COLUMN_RULE) addClosed(top, r, 0, null);
+            }
+        }
+
+        Result finish() {
+            for (int f = 0; f < fields.length; f++) {
+                if (fields[f].kind == ROWS) values[f] = fields[f].reducer.finisher().apply(accumulators[f]);
+            }
+            return new Result(ExtractionSchema.this, values);
+        }
+
+        void read(ClausewitzReader reader, int depth) {
+            Level level = level(depth);
+            while (true) {
+                ClausewitzReader.Event event = reader.next();
+                switch (event) {
+                    case KEY -> {
+                        Level child = advance(level, reader.key(), depth + 1);
+                        if (child.n == 0) reader.skipValue();
+                        else value(reader, reader.next(), child, depth + 1);
+                    }
+                    case SCALAR, START_OBJECT -> {
+                        Level child = advance(level, ITEMS, depth + 1);
+                        if (child.n == 0 && event == ClausewitzReader.Event.START_OBJECT) reader.skipValue();
+                        else value(reader, event, child, depth + 1);
+                    }
+                    case END_OBJECT, END_DOCUMENT -> {
+                        finishRows(level);
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void value(ClausewitzReader reader, ClausewitzReader.Event event, Level child, int depth) {
+            if (event == ClausewitzReader.Event.SCALAR) {
+                Value v = ClausewitzParser.scalarValue(reader.scalar());
+                if (v != null) deliver(child, v);
+            } else if (event == ClausewitzReader.Event.START_OBJECT) {
+                openRows(child);
+                if (hasLive(child)) {
+                    read(reader, depth);
+                } else {
+                    reader.skipValue();
+                    finishRows(child);
+                }
+            }
+        }
+
+        void walk(ObjVal object, int depth) {
+            Level level = level(depth);
+            for (var e : object.map().entrySet()) walkValue(level, e.getKey(), e.getValue(), depth);
+            finishRows(level);
+        }
+
+        private void walkValue(Level level, String key, Value v, int depth) {
+            if (v instanceof ListVal list) {
+                for (Value item : list.list()) walkValue(level, key, item, depth);
+                return;
+            }
+            Level child = advance(level, key, depth + 1);
+            if (child.n == 0) return;
+            if (v instanceof ObjVal o) {
+                openRows(child);
+                walk(o, depth + 1);
+            } else {
+                deliver(child, v);
+            }
+        }
+
+        private Level level(int depth) {
+            while (levels.size() <= depth) levels.add(new Level());
+            return levels.get(depth);
+        }
+
+        private Level advance(Level from, String key, int depth) {
+            Level to = level(depth);
+            to.clear();
+            for (int s = 0; s < from.n; s++) {
+                int r = from.rule[s];
+                int p = from.pos[s];
+                String[] segments = ruleSegments[r];
+                if (p == segments.length) continue;
+                String segment = segments[p];
+                if (segment == ANY_DEPTH) addClosed(to, r, p, from.row[s]);
+                else if (segment == ANY || segment.equals(key)) addClosed(to, r, p + 1, from.row[s]);
+            }
+            return to;
+        }
+
+        /**
+         * Adds a position and, since {@code **} may match nothing, the position after any
+         * {@code **} it stands on.
+         */
+        private void addClosed(Level level, int r, int p, Row row) {
+            level.add(r, p, row);
+            if (p < ruleSegments[r].length && ruleSegments[r][p] == ANY_DEPTH) addClosed(level, r, p + 1, row);
+        }
+
+        private boolean hasLive(Level level) {
+            for (int s = 0; s < level.n; s++) {
+                if (level.pos[s] < ruleSegments[level.rule[s]].length) return true;
+            }
+            return false;
+        }
+
+        private void deliver(Level level, Value v) {
+            for (int s = 0; s < level.n; s++) {
+                int r = level.rule[s];
+                if (level.pos[s] != ruleSegments[r].length) continue;
+
+                if (ruleKind[r] == COLUMN_RULE) {
+                    double[] row = level.row[s].values;
+                    int c = ruleSlot[r];
+                    if (v instanceof NumVal(double d) && Double.isNaN(row[c])) row[c] = d;
+                } else if (ruleKind[r] == SCALAR_RULE) {
+                    int f = ruleField[r];
+                    if (ruleSlot[r] >= bestAlternative[f]) continue;
+                    Object converted = convert(fields[f].kind, v);
+                    if (converted != null) {
+                        values[f] = converted;
+                        bestAlternative[f] = ruleSlot[r];
+                    }
+                }
+            }
+        }
+
+        private void openRows(Level level) {
+            int n = level.n;
+            for (int s = 0; s < n; s++) {
+                int r = level.rule[s];
+                if (ruleKind[r] != ROW_RULE || level.pos[s] != ruleSegments[r].length) continue;
+                int f = ruleField[r];
+                Row row = new Row(f, columnRules[f].length);
+                level.opened.add(row);
+                for (int column : columnRules[f]) addClosed(level, column, 0, row);
+            }
+        }
+
+        private void finishRows(Level level) {
+            for (Row row : level.opened) {
+                fields[row.field].reducer.accumulator().accept(accumulators[row.field], row.values);
+            }
+            level.opened.clear();
+        }
+    }
+
+    private static Object convert(int kind, Value v) {
+        return switch (kind) {
+            case NUMBER -> v instanceof NumVal(double d) ? d : null;
+            case BOOLEAN -> v instanceof BoolVal(boolean b) ? b : null;
+            default -> switch (v) {
+                case StrVal(String s) -> s;
+                case NumVal(double d) -> String.valueOf(d);
+                case BoolVal(boolean b) -> String.valueOf(b);
+                default -> null;
+            };
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package com.warroom.parser;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Set of dotted key paths to materialise when parsing, e.g. {@code "player"} or
+ * {@code "countries.*.politics"}, where {@code *} matches any key. A matched path keeps its whole
+ * subtree; everything outside the projection is skipped by brace matching without being parsed.
+ */
+public final class Projection {
+
+    private static final Projection ALL = new Projection(true);
+
+    private boolean all;
+    private final Map<String, Projection> children = new HashMap<>();
+    private Projection any;
+
+    private Projection(boolean all) {
+        this.all = all;
+    }
+
+    public static Projection all() {
+        return ALL;
+    }
+
+    public static Projection of(String... paths) {
+        Projection root = new Projection(false);
+        for (String path : paths) {
+            Projection node = root;
+            for (String key : path.split("\\.")) {
+                if (node.all) break;
+                if (key.equals("*")) {
+                    if (node.any == null) node.any = new Projection(false);
+                    node = node.any;
+                } else {
+                    node = node.children.computeIfAbsent(key, k -> new Projection(false));
+                }
+            }
+            node.all = true;
+            node.children.clear();
+            node.any = null;
+        }
+        root.foldWildcards();
+        return root;
+    }
+
+    /**
+     * Returns true when everything below this point is kept.
+     */
+    public boolean includesAll() {
+        return all;
+    }
+
+    /**
+     * Returns the projection to apply below {@code key}, or null when the key is not selected.
+     */
+    public Projection child(String key) {
+        if (all) return this;
+        Projection exact = children.get(key);
+        return exact != null ? exact : any;
+    }
+
+    /**
+     * Merges the {@code *} branch into every exact sibling, so that a key with both an exact and a
+     * wildcard path, as {@code GER} in {@code countries.GER.stability} plus
+     * {@code countries.*.politics}, keeps what either selects.
+     */
+    private void foldWildcards() {
+        if (any != null) {
+            children.replaceAll((key, exact) -> union(exact, any));
+            any.foldWildcards();
+        }
+        for (Projection c : children.values()) c.foldWildcards();
+    }
+
+    /**
+     * A fresh projection selecting everything {@code a} or {@code b} selects; null counts as nothing.
+     */
+    private static Projection union(Projection a, Projection b) {
+        if (a == null && b == null) return null;
+        Projection u = new Projection((a != null && a.all) || (b != null && b.all));
+        if (u.all) return u;
+        for (Projection p : new Projection[] {a, b}) {
+            if (p == null) continue;
+            for (var e : p.children.entrySet()) {
+                u.children.put(e.getKey(), union(u.children.get(e.getKey()), e.getValue()));
+            }
+            u.any = union(u.any, p.any);
+        }
+        return u;
+    }
+}
@@ -0,0 +1,43 @@
+package com.warroom.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encoding of a save's (decompressed) content. Saves may start with a seven-byte magic,
+ * {@code HOI4txt} or {@code HOI4bin}; content without one is text.
+ */
+public enum SaveFormat {
+    TEXT,
+    BINARY;
+
+    public static final int HEADER_LENGTH = 7;
+
+    private static final byte[] TEXT_MAGIC = {'H', 'O', 'I', '4', 't', 'x', 't'};
+    private static final byte[] BINARY_MAGIC = {'H', 'O', 'I', '4', 'b', 'i', 'n'};
+
+    public static SaveFormat detect(ByteBuffer data) {
+        return startsWith(data, BINARY_MAGIC) ? BINARY : TEXT;
+    }
+
+    /**
+     * Offset of the first byte after the magic, or 0 if there is none.
+     */
+    public static int contentStart(ByteBuffer data) {
+        return startsWith(data, BINARY_MAGIC) || startsWith(data, TEXT_MAGIC) ? HEADER_LENGTH : 0;
+    }
+
+    /**
+     * A token source reading {@code slice}, a standalone part of a save in this format, in place.
+     */
+    public TokenSource tokens(ByteBuffer slice) {
+        return this == BINARY ? new BinaryTokenizer(slice, TokenTable.standard()) : new ByteTokenizer(slice);
+    }
+
+    private static boolean startsWith(ByteBuffer data, byte[] magic) {
+        if (data.limit() < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) {
+            if (data.get(i) != magic[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,178 @@
+package com.warroom.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Canonicalises identifiers so that a key such as {@code division_template_id}, repeated millions
+ * of times in a save, is decoded once and then shared. Lookups hash and compare the raw bytes or
+ * chars in place, so a hit allocates nothing.
+ *
+ * <p>Canonical instances are {@link String#intern() interned}, so they are the same objects as the
+ * string literals used for lookups, and each symbol also has a dense integer id. Identifiers longer
+ * than {@link #MAX_SYMBOL_LENGTH} are not interned. A table is not thread-safe: use one per parser
+ * or per worker thread.
+ */
+public final class SymbolTable {
+
+    public static final int MAX_SYMBOL_LENGTH = 64;
+
+    private String[] names = new String[256];
+    private int size = 0;
+    private final Map<String, Integer> byName = new HashMap<>();
+
+    // Open-addressed hash table of (id + 1), 0 meaning empty. Each slot keeps the exact bytes it was
+    // found under: byte sequences that are not valid UTF-8 decode to the same name as others, so
+    // several slots may alias one id, but every distinct spelling misses only once.
+    private int[] table = new int[1024];
+    private int[] tableHashes = new int[1024];
+    private byte[][] tableBytes = new byte[1024][];
+    private int used = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    public String intern(ByteBuffer buf, int off, int len) {
+        if (len > MAX_SYMBOL_LENGTH) {
+            byte[] bytes = new byte[len];
+            buf.get(off, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int h = 0;
+        for (int k = 0; k < len; k++) h = 31 * h + (buf.get(off + k) & 0xFF);
+
+        int mask = table.length - 1;
+        for (int slot = mix(h) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if (tableHashes[slot] == h && bytesEqual(tableBytes[slot], buf, off, len)) {
+                hits++;
+                return names[table[slot] - 1];
+            }
+        }
+
+        byte[] bytes = new byte[len];
+        buf.get(off, bytes);
+        return miss(h, new String(bytes, StandardCharsets.UTF_8), bytes);
+    }
+
+    public String intern(CharSequence s, int from, int to) {
+        if (to - from > MAX_SYMBOL_LENGTH) return s.subSequence(from, to).toString();
+
+        int h = 0;
+        for (int k = from; k < to; k++) h = 31 * h + s.charAt(k);
+
+        int mask = table.length - 1;
+        for (int slot = mix(h) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if (tableHashes[slot] == h && charsEqual(names[table[slot] - 1], s, from, to)) {
+                hits++;
+                return names[table[slot] - 1];
+            }
+        }
+
+        String decoded = s.subSequence(from, to).toString();
+        return miss(h, decoded, decoded.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Id of an already interned symbol, or -1.
+     */
+    public int id(String name) {
+        Integer id = byName.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    @Override
+    public String toString() {
+        long total = hits + misses;
+        return String.format(Locale.US, "symbols=%d hits=%d misses=%d (%.1f%% hit rate)",
+                size, hits, misses, total == 0 ? 0.0 : 100.0 * hits / total);
+    }
+
+    /**
+     * @param bytes the spelling that missed, as found for byte lookups and as UTF-8 for char ones
+     */
+    private String miss(int h, String decoded, byte[] bytes) {
+        misses++;
+
+        Integer id = byName.get(decoded);
+        if (id == null) {
+            id = size;
+            if (size == names.length) names = Arrays.copyOf(names, size * 2);
+            names[size] = decoded.intern();
+            byName.put(names[size], id);
+            size++;
+        }
+
+        insert(h, id, bytes);
+        return names[id];
+    }
+
+    private void insert(int h, int id, byte[] bytes) {
+        if ((used + 1) * 2 > table.length) rehash();
+        int mask = table.length - 1;
+        int slot = mix(h) & mask;
+        while (table[slot] != 0) slot = (slot + 1) & mask;
+        table[slot] = id + 1;
+        tableHashes[slot] = h;
+        tableBytes[slot] = bytes;
+        used++;
+    }
+
+    private void rehash() {
+        int[] oldTable = table;
+        int[] oldHashes = tableHashes;
+        byte[][] oldBytes = tableBytes;
+        table = new int[oldTable.length * 2];
+        tableHashes = new int[oldTable.length * 2];
+        tableBytes = new byte[oldTable.length * 2][];
+        int mask = table.length - 1;
+        for (int i = 0; i < oldTable.length; i++) {
+            if (oldTable[i] == 0) continue;
+            int slot = mix(oldHashes[i]) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = oldTable[i];
+            tableHashes[slot] = oldHashes[i];
+            tableBytes[slot] = oldBytes[i];
+        }
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean bytesEqual(byte[] a, ByteBuffer buf, int off, int len) {
+        if (a.length != len) return false;
+        for (int k = 0; k < len; k++) {
+            if (a[k] != buf.get(off + k)) return false;
+        }
+        return true;
+    }
+
+    private static boolean charsEqual(String a, CharSequence s, int from, int to) {
+        if (a.length() != to - from) return false;
+        for (int k = 0; k < a.length(); k++) {
+            if (a.charAt(k) != s.charAt(from + k)) return false;
+        }
+        return true;
+    }
+}
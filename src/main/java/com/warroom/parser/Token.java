@@ -1,10 +1,145 @@
 package com.warroom.parser;
 
-public record Token(Type type, String text, int pos) {
+import java.util.Objects;
+
+/**
+ * A lexical token. Numbers scanned by the tokenizers carry their value as a fixed-point
+ * {@code mantissa / 10^scale} pair and only build their text if someone asks for it.
+ *
+ * <p>Tokens are values, except those handed out by a recycling tokenizer such as
+ * {@link ByteTokenizer#reusable}, which are overwritten in place a few tokens later.
+ */
+public final class Token {
     public enum Type {
         IDENT, STRING, NUMBER,
         LBRACE, RBRACE, EQUALS,
         EOF
     }
-}
 
+    /** Largest scale {@link #number(long, int, int)} accepts; 10^18 still fits in a long. */
+    static final int MAX_SCALE = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int k = 1; k <= MAX_SCALE; k++) POWERS_OF_TEN[k] = POWERS_OF_TEN[k - 1] * 10;
+    }
+
+    private static final int NO_PRIMITIVE = -1;
+
+    private Type type;
+    private int pos;
+    private long mantissa;
+    private int scale;
+    private String text;
+
+    public Token(Type type, String text, int pos) {
+        this.type = type;
+        this.text = text;
+        this.pos = pos;
+        this.mantissa = 0;
+        this.scale = NO_PRIMITIVE;
+    }
+
+    private Token(long mantissa, int scale, int pos) {
+        this.type = Type.NUMBER;
+        this.pos = pos;
+        this.mantissa = mantissa;
+        this.scale = scale;
+    }
+
+    /**
+     * A NUMBER token for {@code mantissa / 10^scale}, written in the source with exactly
+     * {@code scale} decimals and no redundant leading zeros, so its text can be rebuilt on demand.
+     */
+    static Token number(long mantissa, int scale, int pos) {
+        if (scale < 0 || scale > MAX_SCALE) throw new IllegalArgumentException("scale " + scale);
+        return new Token(mantissa, scale, pos);
+    }
+
+    /**
+     * Turns this token into a different one in place; for recycling tokenizers only.
+     */
+    Token reset(Type type, String text, int pos) {
+        this.type = type;
+        this.text = text;
+        this.pos = pos;
+        this.mantissa = 0;
+        this.scale = NO_PRIMITIVE;
+        return this;
+    }
+
+    /**
+     * As {@link #number(long, int, int)}, but in place; for recycling tokenizers only.
+     */
+    Token resetNumber(long mantissa, int scale, int pos) {
+        if (scale < 0 || scale > MAX_SCALE) throw new IllegalArgumentException("scale " + scale);
+        this.type = Type.NUMBER;
+        this.text = null;
+        this.pos = pos;
+        this.mantissa = mantissa;
+        this.scale = scale;
+        return this;
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    public int pos() {
+        return pos;
+    }
+
+    public String text() {
+        String t = text;
+        if (t == null) text = t = formatFixedPoint();
+        return t;
+    }
+
+    /**
+     * Numeric value of a NUMBER token. Scanned numbers with at most 15 significant digits are
+     * converted without touching their text; the result is the same double that
+     * {@link Double#parseDouble} would give.
+     *
+     * @throws NumberFormatException if the token text is not a number
+     */
+    public double number() {
+        if (scale != NO_PRIMITIVE && Math.abs(mantissa) < (1L << 53)) {
+            // Both operands are exact doubles, so the single division is correctly rounded.
+            return scale == 0 ? mantissa : mantissa / (double) POWERS_OF_TEN[scale];
+        }
+        return Double.parseDouble(text());
+    }
+
+    private String formatFixedPoint() {
+        if (scale == 0) return Long.toString(mantissa);
+
+        String digits = Long.toString(Math.abs(mantissa));
+        StringBuilder sb = new StringBuilder(digits.length() + 3);
+        if (mantissa < 0) sb.append('-');
+        if (digits.length() <= scale) {
+            sb.append("0.");
+            sb.append("0".repeat(scale - digits.length()));
+            sb.append(digits);
+        } else {
+            int split = digits.length() - scale;
+            sb.append(digits, 0, split).append('.').append(digits, split, digits.length());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Token t && type == t.type && pos == t.pos && text().equals(t.text());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, text(), pos);
+    }
+
+    @Override
+    public String toString() {
+        return "Token[type=" + type + ", text=" + text() + ", pos=" + pos + "]";
+    }
+}
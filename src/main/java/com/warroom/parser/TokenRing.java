@@ -0,0 +1,26 @@
+package com.warroom.parser;
+
+import static com.warroom.parser.Token.Type.EOF;
+
+/**
+ * The fixed set of tokens a recycling tokenizer hands out round-robin and overwrites in place.
+ * {@link ClausewitzReader} holds at most three tokens of lookahead plus its last scalar, so
+ * {@value #SIZE} leaves room to spare.
+ */
+final class TokenRing {
+
+    static final int SIZE = 8;
+
+    private final Token[] tokens = new Token[SIZE];
+    private int next = 0;
+
+    TokenRing() {
+        for (int k = 0; k < SIZE; k++) tokens[k] = new Token(EOF, "", 0);
+    }
+
+    Token next() {
+        Token t = tokens[next];
+        next = (next + 1) & (SIZE - 1);
+        return t;
+    }
+}
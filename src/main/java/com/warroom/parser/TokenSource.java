@@ -0,0 +1,39 @@
+package com.warroom.parser;
+
+import java.util.List;
+
+public interface TokenSource {
+
+    /**
+     * Returns the next token; once the input is exhausted every call returns an EOF token.
+     */
+    Token next();
+
+    /**
+     * Advances past the '}' matching an already consumed '{' without producing tokens for the block.
+     */
+    default void skipBlock() {
+        int depth = 1;
+        while (depth > 0) {
+            Token t = next();
+            switch (t.type()) {
+                case LBRACE -> depth++;
+                case RBRACE -> depth--;
+                case EOF -> { return; }
+                default -> { }
+            }
+        }
+    }
+
+    static TokenSource of(List<Token> tokens) {
+        return new TokenSource() {
+            private int p = 0;
+
+            @Override
+            public Token next() {
+                if (tokens.isEmpty()) return new Token(Token.Type.EOF, "", 0);
+                return tokens.get(Math.min(p++, tokens.size() - 1));
+            }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package com.warroom.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Names of the 16-bit field tokens of binary saves. The game does not ship them, so the table is
+ * read from a local text file with one {@code <id> <name>} pair per line; ids are decimal or
+ * {@code 0x}-prefixed hex, and blank lines and lines starting with {@code #} are ignored.
+ *
+ * <p>{@link #standard()} is the file named by the {@value #PROPERTY} system property or the
+ * {@value #ENVIRONMENT} environment variable.
+ */
+public final class TokenTable {
+
+    public static final String PROPERTY = "warroom.tokens";
+    public static final String ENVIRONMENT = "WARROOM_TOKENS";
+
+    private static final TokenTable EMPTY = new TokenTable(new String[0]);
+    private static volatile TokenTable standard;
+
+    private final String[] names;
+
+    private TokenTable(String[] names) {
+        this.names = names;
+    }
+
+    public static TokenTable empty() {
+        return EMPTY;
+    }
+
+    public static TokenTable load(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(in);
+        }
+    }
+
+    public static TokenTable read(Reader reader) throws IOException {
+        return parse(reader instanceof BufferedReader br ? br : new BufferedReader(reader));
+    }
+
+    /**
+     * The configured table, loaded on first use; empty if none is configured.
+     *
+     * @throws UncheckedIOException if the configured file cannot be read
+     */
+    public static TokenTable standard() {
+        TokenTable t = standard;
+        if (t != null) return t;
+        synchronized (TokenTable.class) {
+            if (standard != null) return standard;
+            String configured = System.getProperty(PROPERTY, System.getenv(ENVIRONMENT));
+            if (configured == null || configured.isBlank()) {
+                standard = EMPTY;
+            } else {
+                try {
+                    standard = load(Path.of(configured));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException("Cannot read token table " + configured, ex);
+                }
+            }
+            return standard;
+        }
+    }
+
+    /**
+     * Name of token {@code id}, or null if the table does not know it.
+     */
+    public String name(int id) {
+        return id >= 0 && id < names.length ? names[id] : null;
+    }
+
+    public boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    private static TokenTable parse(BufferedReader in) throws IOException {
+        Map<Integer, String> entries = new HashMap<>();
+        int max = -1;
+        String line;
+        int lineNo = 0;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] parts = line.split("\\s+", 2);
+            if (parts.length != 2) throw new IOException("Line " + lineNo + ": expected '<id> <name>'");
+            int id;
+            try {
+                id = parts[0].startsWith("0x") || parts[0].startsWith("0X")
+                        ? Integer.parseInt(parts[0].substring(2), 16)
+                        : Integer.parseInt(parts[0]);
+            } catch (NumberFormatException ex) {
+                throw new IOException("Line " + lineNo + ": bad token id " + parts[0], ex);
+            }
+            if (id < 0 || id > 0xFFFF) throw new IOException("Line " + lineNo + ": token id out of range " + parts[0]);
+            entries.put(id, parts[1].strip().intern());
+            max = Math.max(max, id);
+        }
+
+        String[] names = new String[max + 1];
+        for (var e : entries.entrySet()) names[e.getKey()] = e.getValue();
+        return new TokenTable(names);
+    }
+}
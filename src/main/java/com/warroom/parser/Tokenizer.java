@@ -6,57 +6,92 @@ import java.util.List;
 import static com.warroom.parser.Token.Type.*;
 
 
-public class Tokenizer {
+public class Tokenizer implements TokenSource {
     private final String s;
+    private final SymbolTable symbols;
     private int i = 0;
 
     public Tokenizer(String s) {
+        this(s, new SymbolTable());
+    }
+
+    public Tokenizer(String s, SymbolTable symbols) {
         this.s = s;
+        this.symbols = symbols;
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
     }
 
     public List<Token> tokenize() {
         List<Token> out = new ArrayList<>();
+        while (true) {
+            Token t = next();
+            out.add(t);
+            if (t.type() == EOF) return out;
+        }
+    }
+
+    @Override
+    public Token next() {
         while (true){
             skipWhiteSpace();
             if (i >= s.length()) {
-                out.add(new Token(EOF, "", i));
-                return out;
+                return new Token(EOF, "", i);
             }
 
             char c = s.charAt(i);
 
             if (c == '{') {
-                out.add(new Token(LBRACE, "{", i++));
-                continue;
+                return new Token(LBRACE, "{", i++);
             }
             if (c == '}') {
-                out.add(new Token(RBRACE, "}", i++));
-                continue;
+                return new Token(RBRACE, "}", i++);
             }
             if (c == '=') {
-                out.add(new Token(EQUALS, "=", i++));
-                continue;
+                return new Token(EQUALS, "=", i++);
             }
 
             if (c == '"') {
-                out.add(readString());
-                continue;
+                return readString();
             }
 
             if (isNumberStart(c)){
-                out.add(readNumber());
-                continue;
+                return readNumber();
             }
 
             if (isIdentStart(c)){
-                out.add(readIdent());
-                continue;
+                return readIdent();
             }
 
             i++;
         }
     }
 
+    @Override
+    public void skipBlock() {
+        int depth = 1;
+        while (i < s.length()) {
+            char c = s.charAt(i++);
+
+            if (c == '"') {
+                while (i < s.length()) {
+                    char x = s.charAt(i++);
+                    if (x == '\\') i++;
+                    else if (x == '"') break;
+                }
+            } else if (c == '#') {
+                while (i < s.length() && s.charAt(i) != '\n') i++;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                if (--depth == 0) return;
+            }
+        }
+        i = Math.min(i, s.length());
+    }
+
     private void skipWhiteSpace() {
         while (i < s.length()) {
             char c = s.charAt(i);
@@ -92,19 +127,60 @@ public class Tokenizer {
         return new Token(STRING, sb.toString(), start);
     }
 
+    /**
+     * Scans a number and decodes it while scanning, so common numbers never allocate their text.
+     * Forms that could not be rebuilt verbatim from a fixed-point value (leading zeros, "-0",
+     * a bare "-" or "1.", over 18 digits) keep their source text instead. Dotted dates such as
+     * 1936.1.1.12 are not numbers at all and come back as identifiers.
+     */
     private Token readNumber() {
         int start = i;
         int j = i;
-        if (s.charAt(j) == '-') j++;
-        while (j < s.length() && Character.isDigit(s.charAt(j))) j++;
+        boolean negative = false;
+        if (s.charAt(j) == '-') {
+            negative = true;
+            j++;
+        }
+
+        long mantissa = 0;
+        int scale = 0;
+        boolean exact = true;
+
+        int intStart = j;
+        while (j < s.length() && Character.isDigit(s.charAt(j))) {
+            char c = s.charAt(j++);
+            if (c < '0' || c > '9') exact = false;
+            else mantissa = mantissa * 10 + (c - '0');
+        }
+        int intDigits = j - intStart;
+        if (intDigits == 0 || (intDigits > 1 && s.charAt(intStart) == '0')) exact = false;
 
         if (j < s.length() && s.charAt(j) == '.') {
             j++;
-            while (j < s.length() && Character.isDigit(s.charAt(j))) j++;
+            int fracStart = j;
+            while (j < s.length() && Character.isDigit(s.charAt(j))) {
+                char c = s.charAt(j++);
+                if (c < '0' || c > '9') exact = false;
+                else mantissa = mantissa * 10 + (c - '0');
+            }
+            scale = j - fracStart;
+            if (scale == 0) exact = false;
+            if (j + 1 < s.length() && s.charAt(j) == '.' && Character.isDigit(s.charAt(j + 1))) {
+                while (j < s.length() && (s.charAt(j) == '.' || Character.isDigit(s.charAt(j)))) j++;
+                String ident = symbols.intern(s, i, j);
+                i = j;
+                return new Token(IDENT, ident, start);
+            }
+        }
+        if (intDigits + scale > Token.MAX_SCALE || (negative && mantissa == 0)) exact = false;
+
+        if (!exact) {
+            String num = s.substring(i, j);
+            i = j;
+            return new Token(NUMBER, num, start);
         }
-        String num = s.substring(i, j);
         i = j;
-        return new Token(NUMBER, num, start);
+        return Token.number(negative ? -mantissa : mantissa, scale, start);
     }
 
     private Token readIdent() {
@@ -118,7 +194,7 @@ public class Tokenizer {
                 break;
             }
         }
-        String ident = s.substring(i, j);
+        String ident = symbols.intern(s, i, j);
         i = j;
         return new Token(IDENT, ident, start);
     }
@@ -0,0 +1,128 @@
+package com.warroom.timeline;
+
+import com.warroom.cache.SaveCache;
+import com.warroom.io.SaveLoader;
+import com.warroom.model.CountrySnapshot;
+import com.warroom.transform.CountryLoader;
+import com.warroom.transform.SaveDefinitions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The saves of one campaign folder, kept in a {@link TimelineStore}. {@link #refresh} parses only
+ * the saves the store has not seen yet, and every query afterwards is answered from the store.
+ */
+public final class CampaignTimeline implements Closeable {
+
+    public record RefreshResult(List<TimelineStore.Point> added, List<String> failures, long nanos) {
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d new saves, %d failed, %d ms",
+                    added.size(), failures.size(), nanos / 1_000_000);
+        }
+    }
+
+    private record Loaded(Path file, long size, long modified, GameDate date, Map<String, CountrySnapshot> snapshots) {}
+
+    private final Path folder;
+    private final TimelineStore store;
+
+    private CampaignTimeline(Path folder, TimelineStore store) {
+        this.folder = folder;
+        this.store = store;
+    }
+
+    /**
+     * Opens the timeline of {@code folder}, stored under the user cache directory.
+     */
+    public static CampaignTimeline open(Path folder) throws IOException {
+        Path abs = folder.toAbsolutePath().normalize();
+        CRC32C crc = new CRC32C();
+        crc.update(abs.toString().getBytes(StandardCharsets.UTF_8));
+        String name = abs.getFileName() == null ? "root" : abs.getFileName().toString().replaceAll("[^A-Za-z0-9._-]", "_");
+        Path dir = SaveCache.userCacheDirectory().resolve("timelines")
+                .resolve(String.format(Locale.ROOT, "%s-%08x", name, crc.getValue()));
+        return open(abs, dir);
+    }
+
+    public static CampaignTimeline open(Path folder, Path storeDirectory) throws IOException {
+        return new CampaignTimeline(folder, TimelineStore.open(storeDirectory));
+    }
+
+    public TimelineStore store() {
+        return store;
+    }
+
+    /**
+     * Ingests every *.hoi4 file in the folder that the store has not seen, oldest in-game date
+     * first. A file counts as seen if its name, size and modification time match a stored point.
+     */
+    public RefreshResult refresh() throws IOException {
+        long start = System.nanoTime();
+        List<String> failures = new ArrayList<>();
+        List<Loaded> loaded = new ArrayList<>();
+
+        for (Path file : saveFiles()) {
+            long size = Files.size(file);
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (store.contains(file.getFileName().toString(), size, modified)) continue;
+
+            try {
+                loaded.add(load(file, size, modified));
+            } catch (IOException | RuntimeException ex) {
+                failures.add(file.getFileName() + " — " + ex);
+            }
+        }
+
+        loaded.sort(Comparator.comparing(Loaded::date));
+        List<TimelineStore.Point> added = new ArrayList<>();
+        for (Loaded l : loaded) {
+            added.add(store.append(l.file().getFileName().toString(), l.size(), l.modified(), l.date(), l.snapshots()));
+        }
+        return new RefreshResult(added, failures, System.nanoTime() - start);
+    }
+
+    public List<TimelineStore.Sample> series(String tag, Metric metric, GameDate from, GameDate to) throws IOException {
+        return store.series(tag, metric, from, to);
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+    private List<Path> saveFiles() throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".hoi4"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static Loaded load(Path file, long size, long modified) throws IOException {
+        var saveData = SaveLoader.read(file);
+        var data = saveData.bytes();
+        var index = saveData.index();
+
+        String date = SaveDefinitions.header(data, index).date();
+        if (date == null) throw new IOException("Save has no date");
+
+        var result = new CountryLoader(data, index, date,
+                SaveDefinitions.divisionTemplateNames(data, index),
+                SaveDefinitions.equipmentIdToName(data, index))
+                .loadAll(index.countryTags());
+        return new Loaded(file, size, modified, GameDate.parse(date), result.snapshots());
+    }
+}
@@ -0,0 +1,46 @@
+package com.warroom.timeline;
+
+/**
+ * An in-game date as written in save headers, e.g. {@code "1939.9.1.12"} (year, month, day, hour).
+ */
+public record GameDate(int year, int month, int day, int hour) implements Comparable<GameDate> {
+
+    /**
+     * Parses {@code year[.month[.day[.hour]]]}; missing parts default to the start of the period.
+     *
+     * @throws IllegalArgumentException if the text is not such a date
+     */
+    public static GameDate parse(String text) {
+        if (text == null) throw new IllegalArgumentException("No date");
+        String[] parts = text.trim().split("\\.");
+        if (parts.length == 0 || parts.length > 4) throw new IllegalArgumentException("Not a date: " + text);
+        int[] v = {0, 1, 1, 0};
+        try {
+            for (int i = 0; i < parts.length; i++) v[i] = Integer.parseInt(parts[i]);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Not a date: " + text, ex);
+        }
+        return new GameDate(v[0], v[1], v[2], v[3]);
+    }
+
+    public static GameDate startOf(int year) {
+        return new GameDate(year, 1, 1, 0);
+    }
+
+    public static GameDate endOf(int year) {
+        return new GameDate(year, 12, 31, 23);
+    }
+
+    @Override
+    public int compareTo(GameDate o) {
+        if (year != o.year) return Integer.compare(year, o.year);
+        if (month != o.month) return Integer.compare(month, o.month);
+        if (day != o.day) return Integer.compare(day, o.day);
+        return Integer.compare(hour, o.hour);
+    }
+
+    @Override
+    public String toString() {
+        return year + "." + month + "." + day + "." + hour;
+    }
+}
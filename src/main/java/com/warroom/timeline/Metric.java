@@ -0,0 +1,37 @@
+package com.warroom.timeline;
+
+import com.warroom.model.CountrySnapshot;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A numeric country statistic tracked over a campaign; each one is a column of the
+ * {@link TimelineStore}. A value missing from a snapshot is stored as NaN.
+ */
+public enum Metric {
+    MANPOWER(s -> orNaN(s.manpower())),
+    CIVILIAN_FACTORIES(s -> orNaN(s.civilianFactories())),
+    MILITARY_FACTORIES(s -> orNaN(s.militaryFactories())),
+    DOCKYARDS(s -> orNaN(s.dockyards())),
+    POLITICAL_POWER(s -> orNaN(s.politicalPower())),
+    STABILITY(s -> orNaN(s.stability())),
+    WAR_SUPPORT(s -> orNaN(s.warSupport())),
+    COMMAND_POWER(s -> orNaN(s.commandPower())),
+    RESEARCH_SLOTS(s -> orNaN(s.researchSlots())),
+    DIVISIONS(s -> s.divisionsByTemplate() == null ? Double.NaN
+            : s.divisionsByTemplate().values().stream().mapToInt(Integer::intValue).sum());
+
+    private final ToDoubleFunction<CountrySnapshot> extractor;
+
+    Metric(ToDoubleFunction<CountrySnapshot> extractor) {
+        this.extractor = extractor;
+    }
+
+    public double valueOf(CountrySnapshot snapshot) {
+        return extractor.applyAsDouble(snapshot);
+    }
+
+    private static double orNaN(Double d) {
+        return d == null ? Double.NaN : d;
+    }
+}
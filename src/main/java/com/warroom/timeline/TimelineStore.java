@@ -0,0 +1,295 @@
+package com.warroom.timeline;
+
+import com.warroom.model.CountrySnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Append-only, columnar store of per-country metrics over the saves of one campaign.
+ *
+ * <p>Each ingested save is a <em>point</em>. For every {@link Metric} there is one file of raw
+ * doubles, and a point appends one value per known country tag, in tag-id order. A value is
+ * therefore found by arithmetic: the point's column offset plus eight bytes per tag id. A series
+ * query reads one double per point from one file and never touches a save.
+ *
+ * <p>Layout of the store directory:
+ * <ul>
+ *   <li>{@code tags.dict}: tag names, appended in id order</li>
+ *   <li>{@code <metric>.f64}: the metric columns</li>
+ *   <li>{@code points.log}: one record per point, written last as the commit record</li>
+ * </ul>
+ * Bytes past the last committed point, e.g. after a crash mid-append, are cut off on open.
+ */
+public final class TimelineStore implements Closeable {
+
+    private static final int MAGIC = 0x57525431; // "WRT1"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * An ingested save; {@code tagCount} is the number of values it holds in each column.
+     */
+    public record Point(String fileName, long fileSize, long modified, GameDate date, int tagCount) {}
+
+    public record Sample(GameDate date, double value) {}
+
+    private final Path directory;
+    private final Path pointsFile;
+    private final Path tagsFile;
+
+    private final List<Point> points = new ArrayList<>();
+    private final List<Long> pointOffsets = new ArrayList<>();
+    private final List<String> tags = new ArrayList<>();
+    private final Map<String, Integer> tagIds = new HashMap<>();
+    private final Map<Metric, FileChannel> columns = new EnumMap<>(Metric.class);
+    private long committedValues = 0;
+
+    private TimelineStore(Path directory) {
+        this.directory = directory;
+        this.pointsFile = directory.resolve("points.log");
+        this.tagsFile = directory.resolve("tags.dict");
+    }
+
+    /**
+     * Opens the store in {@code directory}, creating it if needed.
+     */
+    public static TimelineStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        TimelineStore store = new TimelineStore(directory);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException ex) {
+            store.close();
+            throw ex;
+        }
+        return store;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public synchronized List<Point> points() {
+        return List.copyOf(points);
+    }
+
+    public synchronized Set<String> tags() {
+        return Collections.unmodifiableSet(new TreeSet<>(tags));
+    }
+
+    /**
+     * True if a save with this name, size and modification time has been ingested.
+     */
+    public synchronized boolean contains(String fileName, long fileSize, long modified) {
+        for (Point p : points) {
+            if (p.fileName().equals(fileName) && p.fileSize() == fileSize && p.modified() == modified) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Appends one point. Columns and new tags are written first; the point only becomes visible,
+     * here and after a reopen, once its record in {@code points.log} is written.
+     */
+    public synchronized Point append(String fileName, long fileSize, long modified, GameDate date,
+                                     Map<String, CountrySnapshot> snapshots) throws IOException {
+        List<String> newTags = new ArrayList<>();
+        for (String tag : new TreeSet<>(snapshots.keySet())) {
+            if (!tagIds.containsKey(tag)) newTags.add(tag);
+        }
+        if (!newTags.isEmpty()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                for (String tag : newTags) out.writeUTF(tag);
+            }
+            Files.write(tagsFile, bytes.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            for (String tag : newTags) {
+                tagIds.put(tag, tags.size());
+                tags.add(tag);
+            }
+        }
+
+        int tagCount = tags.size();
+        ByteBuffer column = ByteBuffer.allocate(tagCount * Double.BYTES);
+        for (Metric metric : Metric.values()) {
+            column.clear();
+            for (String tag : tags) {
+                CountrySnapshot snap = snapshots.get(tag);
+                column.putDouble(snap == null ? Double.NaN : metric.valueOf(snap));
+            }
+            column.flip();
+            FileChannel ch = columns.get(metric);
+            long position = committedValues * Double.BYTES;
+            while (column.hasRemaining()) position += ch.write(column, position);
+            ch.force(false);
+        }
+
+        Point point = new Point(fileName, fileSize, modified, date, tagCount);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writePoint(out, point);
+        }
+        Files.write(pointsFile, bytes.toByteArray(), StandardOpenOption.APPEND);
+
+        points.add(point);
+        pointOffsets.add(committedValues);
+        committedValues += tagCount;
+        return point;
+    }
+
+    /**
+     * Every value of {@code metric} for {@code tag}, in date order, skipping points without one.
+     */
+    public List<Sample> series(String tag, Metric metric) throws IOException {
+        return series(tag, metric, null, null);
+    }
+
+    /**
+     * Values of {@code metric} for {@code tag} dated within {@code [from, to]}, in date order;
+     * a null bound is open.
+     */
+    public synchronized List<Sample> series(String tag, Metric metric, GameDate from, GameDate to) throws IOException {
+        Integer id = tagIds.get(tag);
+        if (id == null) return List.of();
+
+        FileChannel ch = columns.get(metric);
+        ByteBuffer one = ByteBuffer.allocate(Double.BYTES);
+        List<Sample> out = new ArrayList<>();
+        for (int p = 0; p < points.size(); p++) {
+            Point point = points.get(p);
+            if (id >= point.tagCount()) continue;
+            if (from != null && point.date().compareTo(from) < 0) continue;
+            if (to != null && point.date().compareTo(to) > 0) continue;
+
+            one.clear();
+            long position = (pointOffsets.get(p) + id) * Double.BYTES;
+            while (one.hasRemaining()) {
+                if (ch.read(one, position + one.position()) < 0) throw new IOException("Truncated column " + metric);
+            }
+            double v = one.getDouble(0);
+            if (!Double.isNaN(v)) out.add(new Sample(point.date(), v));
+        }
+        out.sort(Comparator.comparing(Sample::date));
+        return out;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        IOException first = null;
+        for (FileChannel ch : columns.values()) {
+            try {
+                ch.close();
+            } catch (IOException ex) {
+                if (first == null) first = ex;
+            }
+        }
+        columns.clear();
+        if (first != null) throw first;
+    }
+
+    private void load() throws IOException {
+        if (Files.exists(pointsFile)) {
+            byte[] bytes = Files.readAllBytes(pointsFile);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (bytes.length < 8 || in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a timeline store, or an unsupported version: " + pointsFile);
+            }
+            long good = 8;
+            while (in.available() > 0) {
+                try {
+                    Point point = readPoint(in);
+                    points.add(point);
+                    pointOffsets.add(committedValues);
+                    committedValues += point.tagCount();
+                    good = bytes.length - in.available();
+                } catch (IOException | IllegalArgumentException ex) {
+                    break;
+                }
+            }
+            truncate(pointsFile, good);
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+            }
+            Files.write(pointsFile, bytes.toByteArray());
+        }
+
+        int committedTags = points.stream().mapToInt(Point::tagCount).max().orElse(0);
+        if (Files.exists(tagsFile)) {
+            byte[] bytes = Files.readAllBytes(tagsFile);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            long good = 0;
+            while (in.available() > 0) {
+                try {
+                    String tag = in.readUTF();
+                    tagIds.put(tag, tags.size());
+                    tags.add(tag);
+                    good = bytes.length - in.available();
+                } catch (IOException ex) {
+                    break;
+                }
+            }
+            truncate(tagsFile, good);
+        }
+        if (tags.size() < committedTags) {
+            throw new IOException("Timeline store is missing " + (committedTags - tags.size()) + " tags: " + tagsFile);
+        }
+
+        for (Metric metric : Metric.values()) {
+            Path file = directory.resolve(metric.name().toLowerCase(java.util.Locale.ROOT) + ".f64");
+            FileChannel ch = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            columns.put(metric, ch);
+            long expected = committedValues * Double.BYTES;
+            if (ch.size() < expected) throw new IOException("Timeline column is truncated: " + file);
+            if (ch.size() > expected) ch.truncate(expected);
+        }
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        if (Files.size(file) == size) return;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(size);
+        }
+    }
+
+    private static void writePoint(DataOutputStream out, Point p) throws IOException {
+        out.writeUTF(p.fileName());
+        out.writeLong(p.fileSize());
+        out.writeLong(p.modified());
+        out.writeUTF(p.date().toString());
+        out.writeInt(p.tagCount());
+        out.writeInt(checksum(p));
+    }
+
+    private static Point readPoint(DataInputStream in) throws IOException {
+        Point p = new Point(in.readUTF(), in.readLong(), in.readLong(), GameDate.parse(in.readUTF()), in.readInt());
+        if (in.readInt() != checksum(p)) throw new IOException("Corrupt point record");
+        return p;
+    }
+
+    private static int checksum(Point p) {
+        return Arrays.hashCode(new Object[] {p.fileName(), p.fileSize(), p.modified(), p.date().toString(), p.tagCount()});
+    }
+}
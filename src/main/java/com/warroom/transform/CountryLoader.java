@@ -0,0 +1,302 @@
+package com.warroom.transform;
+
+import com.warroom.index.SaveIndex;
+import com.warroom.metrics.LoadMetrics;
+import com.warroom.metrics.MeteredTokenSource;
+import com.warroom.model.CountrySnapshot;
+import com.warroom.parser.BinaryTokenizer;
+import com.warroom.parser.ByteTokenizer;
+import com.warroom.parser.ClausewitzReader;
+import com.warroom.parser.ExtractionSchema;
+import com.warroom.parser.SaveFormat;
+import com.warroom.parser.SymbolTable;
+import com.warroom.parser.TokenSource;
+import com.warroom.parser.TokenTable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Slices, parses and maps countries out of an indexed save. Every country block is independent
+ * once the index knows its boundaries, so {@link #loadAll} fans the work out over a fork-join pool.
+ * Blocks are read in one streaming pass against {@link CountryMapper#SCHEMA}; no tree is built.
+ *
+ * <p>Loads are cancelled by interrupting the calling thread: workers check it between countries
+ * and the call ends with a {@link CancellationException}, leaving the interrupt status set.
+ */
+public final class CountryLoader {
+
+    private static final int SEQUENTIAL_THRESHOLD = 4;
+
+    // A worker whose symbol table outgrew this is dropped rather than pooled again.
+    private static final int MAX_WORKER_SYMBOLS = 1 << 16;
+
+    // Country blocks share almost all of their keys and their shape, so workers keep one symbol table
+    // and one recycling tokenizer across countries instead of allocating them per block. They are
+    // pooled per loader rather than per thread: the tables live only as long as the save, and
+    // single loads on short-lived virtual threads reuse them too.
+    private final ConcurrentLinkedDeque<Worker> idleWorkers = new ConcurrentLinkedDeque<>();
+
+    private final ByteBuffer data;
+    private final SaveIndex index;
+    private final String saveDate;
+    private final Map<String, String> divisionTemplateNames;
+    private final Map<String, String> equipmentIdToName;
+
+    public CountryLoader(ByteBuffer data,
+                         SaveIndex index,
+                         String saveDate,
+                         Map<String, String> divisionTemplateNames,
+                         Map<String, String> equipmentIdToName) {
+        this.data = data;
+        this.index = index;
+        this.saveDate = saveDate;
+        this.divisionTemplateNames = divisionTemplateNames;
+        this.equipmentIdToName = equipmentIdToName;
+    }
+
+    /**
+     * Wall-clock time of a bulk load plus the time spent in each phase, summed over all workers,
+     * and how many identifiers were served from the pooled workers' symbol tables.
+     */
+    public record PhaseTimings(long sliceNanos, long parseNanos, long mapNanos, long wallNanos, int parallelism,
+                               long symbolHits, long symbolMisses) {
+        public double symbolHitRate() {
+            long total = symbolHits + symbolMisses;
+            return total == 0 ? 0.0 : (double) symbolHits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "wall=%dms slice=%dms parse=%dms map=%dms (cpu, %d workers) symbols=%.1f%% hits (%d misses)",
+                    wallNanos / 1_000_000, sliceNanos / 1_000_000, parseNanos / 1_000_000,
+                    mapNanos / 1_000_000, parallelism, 100 * symbolHitRate(), symbolMisses);
+        }
+    }
+
+    public record Result(Map<String, CountrySnapshot> snapshots, List<String> failures, PhaseTimings timings) {}
+
+    /**
+     * Loads a single country, or returns null if the save has no usable block for it.
+     */
+    public CountrySnapshot load(String tag) {
+        return load(tag, null);
+    }
+
+    /**
+     * Same as {@link #load(String)}, recording into {@code metrics} if it is not null.
+     *
+     * @throws CancellationException if the calling thread is interrupted
+     */
+    public CountrySnapshot load(String tag, LoadMetrics metrics) {
+        checkInterrupted(Thread.currentThread());
+        Worker worker = acquireWorker();
+        try {
+            return loadOne(tag, worker, null, metrics).snapshot();
+        } finally {
+            releaseWorker(worker);
+        }
+    }
+
+    public Result loadAll(List<String> tags) {
+        return loadAll(tags, ForkJoinPool.commonPool());
+    }
+
+    public Result loadAll(List<String> tags, ForkJoinPool pool) {
+        return loadAll(tags, pool, null);
+    }
+
+    /**
+     * Loads every tag on {@code pool}; each country's tokenize, parse and map time, token and
+     * value counts, latency and allocations go into {@code metrics} if it is not null.
+     *
+     * @throws CancellationException if the calling thread is interrupted before all tags are loaded
+     */
+    public Result loadAll(List<String> tags, ForkJoinPool pool, LoadMetrics metrics) {
+        Phases phases = new Phases(Thread.currentThread());
+        long start = System.nanoTime();
+        List<Outcome> outcomes = pool.invoke(new LoadTask(tags, 0, tags.size(), phases, metrics));
+        checkInterrupted(phases.caller);
+        long wall = System.nanoTime() - start;
+
+        Map<String, CountrySnapshot> snapshots = new TreeMap<>();
+        List<String> failures = new ArrayList<>();
+        for (Outcome o : outcomes) {
+            if (o.snapshot() != null) snapshots.put(o.tag(), o.snapshot());
+            else failures.add(o.tag() + " — " + o.failure());
+        }
+
+        PhaseTimings timings = new PhaseTimings(
+                phases.slice.sum(), phases.parse.sum(), phases.map.sum(), wall, pool.getParallelism(),
+                phases.symbolHits.sum(), phases.symbolMisses.sum());
+        return new Result(Collections.unmodifiableMap(snapshots), failures, timings);
+    }
+
+    private Outcome loadOne(String tag, Worker worker, Phases phases, LoadMetrics metrics) {
+        try {
+            long allocated = metrics == null ? -1 : LoadMetrics.threadAllocatedBytes();
+            long t0 = System.nanoTime();
+            var block = index.country(tag);
+            if (block == null) return Outcome.failed(tag, "snippet not found");
+            ByteBuffer snippet = SaveIndex.slice(data, block);
+
+            SymbolTable symbols = worker.symbols;
+            long hits = symbols.hits();
+            long misses = symbols.misses();
+
+            long t1 = System.nanoTime();
+            TokenSource tokens = worker.tokens(index.format(), snippet);
+            MeteredTokenSource metered = metrics == null ? null : new MeteredTokenSource(tokens);
+            var reader = new ClausewitzReader(metered == null ? tokens : metered);
+            ExtractionSchema.Result fields = enterObject(reader, tag) ? CountryMapper.SCHEMA.evaluate(reader) : null;
+
+            long t2 = System.nanoTime();
+            CountrySnapshot snap = fields == null ? null
+                    : CountryMapper.from(tag, saveDate, fields, divisionTemplateNames, equipmentIdToName);
+            long t3 = System.nanoTime();
+
+            if (phases != null) {
+                phases.slice.add(t1 - t0);
+                phases.parse.add(t2 - t1);
+                phases.map.add(t3 - t2);
+                phases.symbolHits.add(symbols.hits() - hits);
+                phases.symbolMisses.add(symbols.misses() - misses);
+            }
+            if (metrics != null) {
+                long tokenize = Math.min(metered.estimatedNanos(), t2 - t1);
+                metrics.add(LoadMetrics.Phase.TOKENIZE, tokenize);
+                metrics.add(LoadMetrics.Phase.PARSE, t2 - t1 - tokenize);
+                metrics.add(LoadMetrics.Phase.MAP, t3 - t2);
+                metrics.tokens(metered.tokens());
+                metrics.nodes(reader.valueCount());
+                metrics.country(t3 - t0);
+                metrics.allocated(allocated, LoadMetrics.threadAllocatedBytes());
+            }
+
+            if (fields == null) return Outcome.failed(tag, "parsed but tag object missing");
+            if (snap == null || snap.tag() == null) return Outcome.failed(tag, "mapper returned null/invalid snapshot");
+            return new Outcome(tag, snap, null);
+        } catch (RuntimeException ex) {
+            return Outcome.failed(tag, ex.getClass().getSimpleName() + ": " + ex.getMessage());
+        }
+    }
+
+    private Worker acquireWorker() {
+        Worker worker = idleWorkers.pollFirst();
+        return worker == null ? new Worker() : worker;
+    }
+
+    private void releaseWorker(Worker worker) {
+        if (worker.symbols.size() <= MAX_WORKER_SYMBOLS) idleWorkers.offerFirst(worker);
+    }
+
+    private static void checkInterrupted(Thread caller) {
+        if (caller.isInterrupted()) throw new CancellationException("Country load interrupted");
+    }
+
+    /**
+     * Advances to the body of the object under {@code key}; false if the document has none.
+     */
+    private static boolean enterObject(ClausewitzReader reader, String key) {
+        while (true) {
+            switch (reader.next()) {
+                case KEY -> {
+                    if (!reader.key().equals(key)) {
+                        reader.skipValue();
+                    } else if (reader.next() == ClausewitzReader.Event.START_OBJECT) {
+                        return true;
+                    }
+                }
+                case END_DOCUMENT -> {
+                    return false;
+                }
+                default -> { }
+            }
+        }
+    }
+
+    private record Outcome(String tag, CountrySnapshot snapshot, String failure) {
+        static Outcome failed(String tag, String why) {
+            return new Outcome(tag, null, why);
+        }
+    }
+
+    private static final class Phases {
+        // The thread that called loadAll; workers cannot see its interrupt status otherwise.
+        final Thread caller;
+        final LongAdder slice = new LongAdder();
+        final LongAdder parse = new LongAdder();
+        final LongAdder map = new LongAdder();
+        final LongAdder symbolHits = new LongAdder();
+        final LongAdder symbolMisses = new LongAdder();
+
+        Phases(Thread caller) {
+            this.caller = caller;
+        }
+    }
+
+    @SuppressWarnings("serial") // never serialized; ForkJoinTask is Serializable only by inheritance
+    private final class LoadTask extends RecursiveTask<List<Outcome>> {
+        private final List<String> tags;
+        private final int from;
+        private final int to;
+        private final Phases phases;
+        private final LoadMetrics metrics;
+
+        LoadTask(List<String> tags, int from, int to, Phases phases, LoadMetrics metrics) {
+            this.tags = tags;
+            this.from = from;
+            this.to = to;
+            this.phases = phases;
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected List<Outcome> compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                List<Outcome> out = new ArrayList<>(to - from);
+                Worker worker = acquireWorker();
+                try {
+                    for (int i = from; i < to; i++) {
+                        checkInterrupted(phases.caller);
+                        out.add(loadOne(tags.get(i), worker, phases, metrics));
+                    }
+                } finally {
+                    releaseWorker(worker);
+                }
+                return out;
+            }
+
+            int mid = (from + to) >>> 1;
+            LoadTask left = new LoadTask(tags, from, mid, phases, metrics);
+            left.fork();
+            List<Outcome> right = new LoadTask(tags, mid, to, phases, metrics).compute();
+            List<Outcome> out = new ArrayList<>(left.join());
+            out.addAll(right);
+            return out;
+        }
+    }
+
+    private static final class Worker {
+        final SymbolTable symbols = new SymbolTable();
+        final ByteTokenizer text = ByteTokenizer.reusable(symbols);
+        BinaryTokenizer binary;
+
+        TokenSource tokens(SaveFormat format, ByteBuffer snippet) {
+            if (format == SaveFormat.TEXT) return text.reset(snippet);
+            if (binary == null) binary = BinaryTokenizer.reusable(TokenTable.standard());
+            return binary.reset(snippet);
+        }
+    }
+}
@@ -1,66 +1,101 @@
 package com.warroom.transform;
-import com.warroom.parser.Clausewitz;
 
 import com.warroom.model.CountrySnapshot;
+import com.warroom.model.EquipmentAmount;
 import com.warroom.parser.ClausewitzParser;
+import com.warroom.parser.ClausewitzReader;
+import com.warroom.parser.ExtractionSchema;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collector;
 
 public final class CountryMapper {
 
+    private static final ExtractionSchema.Field<String> RULING_PARTY = ExtractionSchema.string("politics.ruling_party");
+    private static final ExtractionSchema.Field<Double> POLITICAL_POWER = ExtractionSchema.number("politics.political_power");
+    private static final ExtractionSchema.Field<Double> STABILITY = ExtractionSchema.number("stability");
+    private static final ExtractionSchema.Field<Double> WAR_SUPPORT = ExtractionSchema.number("war_support");
+    private static final ExtractionSchema.Field<Double> COMMAND_POWER = ExtractionSchema.number("command_power");
+    private static final ExtractionSchema.Field<Double> RESEARCH_SLOTS = ExtractionSchema.number("research_slot");
+    private static final ExtractionSchema.Field<Double> CAPITAL = ExtractionSchema.number("capital");
+    private static final ExtractionSchema.Field<Boolean> MAJOR = ExtractionSchema.bool("major");
+
+    private static final ExtractionSchema.Field<Double> MANPOWER = ExtractionSchema.number(
+            "manpower", "manpower_pool", "total_manpower", "manpower_total");
+    private static final ExtractionSchema.Field<Double> CIVILIAN_FACTORIES = ExtractionSchema.number(
+            "civilian_factories", "num_of_civilian_factories", "civ_factory_count", "civilian_factory_count");
+    private static final ExtractionSchema.Field<Double> MILITARY_FACTORIES = ExtractionSchema.number(
+            "military_factories", "num_of_military_factories", "mil_factory_count", "military_factory_count");
+    private static final ExtractionSchema.Field<Double> DOCKYARDS = ExtractionSchema.number(
+            "dockyards", "num_of_dockyards", "dockyard_count");
+
+    // division_template_id={ id={ id=1 type=52 } } or division_template_id={ id=1 }, anywhere under units
+    private static final ExtractionSchema.Field<Map<String, Integer>> DIVISIONS_BY_TEMPLATE_ID = ExtractionSchema.rows(
+            "units.**.division_template_id",
+            List.of("id.id", "id"),
+            Collector.of(HashMap::new, (Map<String, Integer> counts, double[] row) -> {
+                double id = Double.isNaN(row[0]) ? row[1] : row[0];
+                if (!Double.isNaN(id)) counts.merge(formatId(id), 1, Integer::sum);
+            }, CountryMapper::mergeCounts));
+
+    // equipment={ id={ id=123 type=70 } amount=4.5 }
+    private static final ExtractionSchema.Field<Map<String, Double>> MARKET_STOCKPILE_BY_ID = ExtractionSchema.rows(
+            "equipment_market.market_stockpile.equipments.equipment",
+            List.of("id.type", "id.id", "amount"),
+            Collector.of(HashMap::new, (Map<String, Double> totals, double[] row) -> {
+                if (row[0] == 70 && !Double.isNaN(row[1]) && row[2] > 0) {
+                    totals.merge(formatId(row[1]), row[2], Double::sum);
+                }
+            }, CountryMapper::mergeTotals));
+
+    public static final ExtractionSchema SCHEMA = ExtractionSchema.of(
+            RULING_PARTY, POLITICAL_POWER, STABILITY, WAR_SUPPORT, COMMAND_POWER, RESEARCH_SLOTS, CAPITAL, MAJOR,
+            MANPOWER, CIVILIAN_FACTORIES, MILITARY_FACTORIES, DOCKYARDS,
+            DIVISIONS_BY_TEMPLATE_ID, MARKET_STOCKPILE_BY_ID);
+
     private CountryMapper() {}
 
     public static CountrySnapshot from(
             String tag,
             String saveDate,
             ClausewitzParser.ObjVal countryObj,
-            java.util.Map<String, String> divisionTemplateNames,
-            java.util.Map<String, String> equipmentIdToName
+            Map<String, String> divisionTemplateNames,
+            Map<String, String> equipmentIdToName
     ) {
-        String rulingParty = Clausewitz.pathStr(countryObj, "politics", "ruling_party").orElse(null);
-        String ideology = rulingParty;
-        Double politicalPower = Clausewitz.pathNum(countryObj, "politics", "political_power").orElse(null);
-        Double stability = Clausewitz.get(countryObj, "stability").flatMap(Clausewitz::num).orElse(null);
-        Double warSupport = Clausewitz.get(countryObj, "war_support").flatMap(Clausewitz::num).orElse(null);
-        Double commandPower = Clausewitz.get(countryObj, "command_power").flatMap(Clausewitz::num).orElse(null);
-        Double researchSlots = Clausewitz.pathNum(countryObj, "research_slot").orElse(null);
-        Double capital = Clausewitz.get(countryObj, "capital").flatMap(Clausewitz::num).orElse(null);
-        Boolean major = Clausewitz.get(countryObj, "major").flatMap(Clausewitz::bool).orElse(null);
-
-
-        Double manpower = firstNum(
-                countryObj,
-                "manpower",
-                "manpower_pool",
-                "total_manpower",
-                "manpower_total"
-        );
-
-        Double civ = firstNum(
-                countryObj,
-                "civilian_factories",
-                "num_of_civilian_factories",
-                "civ_factory_count",
-                "civilian_factory_count"
-        );
+        return from(tag, saveDate, SCHEMA.evaluate(countryObj), divisionTemplateNames, equipmentIdToName);
+    }
 
-        Double mil = firstNum(
-                countryObj,
-                "military_factories",
-                "num_of_military_factories",
-                "mil_factory_count",
-                "military_factory_count"
-        );
+    /**
+     * Builds the snapshot from a country object read straight off {@code reader}, which must have
+     * just reported the object's {@code START_OBJECT}; nothing outside {@link #SCHEMA} is parsed.
+     */
+    public static CountrySnapshot from(
+            String tag,
+            String saveDate,
+            ClausewitzReader reader,
+            Map<String, String> divisionTemplateNames,
+            Map<String, String> equipmentIdToName
+    ) {
+        return from(tag, saveDate, SCHEMA.evaluate(reader), divisionTemplateNames, equipmentIdToName);
+    }
 
-        Double docks = firstNum(
-                countryObj,
-                "dockyards",
-                "num_of_dockyards",
-                "dockyard_count"
-        );
+    public static CountrySnapshot from(
+            String tag,
+            String saveDate,
+            ExtractionSchema.Result fields,
+            Map<String, String> divisionTemplateNames,
+            Map<String, String> equipmentIdToName
+    ) {
+        String rulingParty = fields.get(RULING_PARTY);
+        String ideology = rulingParty;
 
-        var divisionsByTemplate = extractDivisionsByTemplate(countryObj, divisionTemplateNames);
-        var stockpilesTop10 = extractMarketStockpileTop10(countryObj, equipmentIdToName);
+        var divisionsByTemplate = divisionsByTemplate(fields.get(DIVISIONS_BY_TEMPLATE_ID), divisionTemplateNames);
+        var stockpilesTop10 = marketStockpileTop10(fields.get(MARKET_STOCKPILE_BY_ID), equipmentIdToName);
 
         return new CountrySnapshot(
                 tag,
@@ -68,50 +103,28 @@ public final class CountryMapper {
                 ideology,
                 rulingParty,
 
-                manpower,
-                civ,
-                mil,
-                docks,
-
-                politicalPower,
-                stability,
-                warSupport,
-                commandPower,
-                researchSlots,
-                capital,
-                major,
+                fields.get(MANPOWER),
+                fields.get(CIVILIAN_FACTORIES),
+                fields.get(MILITARY_FACTORIES),
+                fields.get(DOCKYARDS),
+
+                fields.get(POLITICAL_POWER),
+                fields.get(STABILITY),
+                fields.get(WAR_SUPPORT),
+                fields.get(COMMAND_POWER),
+                fields.get(RESEARCH_SLOTS),
+                fields.get(CAPITAL),
+                fields.get(MAJOR),
                 divisionsByTemplate,
                 stockpilesTop10
         );
     }
 
-
-
-    private static Double firstNum(ClausewitzParser.ObjVal obj, String... keys) {
-        for (String k : keys) {
-            Double v = getNum(obj, k);
-            if (v != null) return v;
-        }
-        return null;
-    }
-
-    private static Double getNum(ClausewitzParser.ObjVal obj, String key) {
-        var v = obj.map().get(key);
-        if (v instanceof ClausewitzParser.NumVal(double v1)) return v1;
-        return null;
-    }
-
-    private static java.util.Map<String, Integer> extractDivisionsByTemplate(
-            ClausewitzParser.ObjVal countryObj,
-            java.util.Map<String, String> templateNames
+    private static Map<String, Integer> divisionsByTemplate(
+            Map<String, Integer> countsById,
+            Map<String, String> templateNames
     ) {
-        ClausewitzParser.Value units = countryObj.map().get("units");
-        if (units == null) return java.util.Map.of();
-
-        java.util.Map<String, Integer> countsById = new java.util.HashMap<>();
-        collectDivisionTemplateIds(units, countsById);
-
-        java.util.Map<String, Integer> countsByName = new java.util.TreeMap<>();
+        Map<String, Integer> countsByName = new TreeMap<>();
         for (var e : countsById.entrySet()) {
             String id = e.getKey();
             String name = templateNames.getOrDefault(id, "Template " + id);
@@ -121,85 +134,16 @@ public final class CountryMapper {
         return countsByName;
     }
 
-
-    private static void collectDivisionTemplateIds(ClausewitzParser.Value v,
-                                                   java.util.Map<String, Integer> out) {
-        if (v == null) return;
-
-        if (v instanceof ClausewitzParser.ObjVal(java.util.Map<String, ClausewitzParser.Value> map)) {
-
-            String templateId = extractTemplateId(map.get("division_template_id"));
-            if (templateId != null) {
-                out.merge(templateId, 1, Integer::sum);
-            }
-
-            for (var child : map.values()) {
-                collectDivisionTemplateIds(child, out);
-            }
-            return;
-        }
-
-        if (v instanceof ClausewitzParser.ListVal(java.util.List<ClausewitzParser.Value> list)) {
-            for (var item : list) {
-                collectDivisionTemplateIds(item, out);
-            }
-        }
-    }
-
-    private static String extractTemplateId(ClausewitzParser.Value v) {
-        if (!(v instanceof ClausewitzParser.ObjVal(java.util.Map<String, ClausewitzParser.Value> map))) return null;
-
-        var inner = map.get("id");
-        if (inner instanceof ClausewitzParser.ObjVal(java.util.Map<String, ClausewitzParser.Value> map1)) {
-            var idVal = map1.get("id");
-            if (idVal instanceof ClausewitzParser.NumVal(double v1)) {
-                return String.format(Locale.US, "%.0f", v1);
-            }
-        }
-
-        var directId = map.get("id");
-        if (directId instanceof ClausewitzParser.NumVal(double v1)) {
-            return String.format(Locale.US, "%.0f", v1);
-        }
-        return null;
-    }
-
-    private static java.util.List<com.warroom.model.EquipmentAmount> extractMarketStockpileTop10(
-            ClausewitzParser.ObjVal countryObj,
-            java.util.Map<String, String> equipmentIdToName
+    private static List<EquipmentAmount> marketStockpileTop10(
+            Map<String, Double> totals,
+            Map<String, String> equipmentIdToName
     ) {
-        var marketObj = com.warroom.parser.Clausewitz.path(countryObj, "equipment_market")
-                .flatMap(com.warroom.parser.Clausewitz::obj)
-                .orElse(null);
-        if (marketObj == null) return java.util.List.of();
-
-        var stockObj = com.warroom.parser.Clausewitz.path(marketObj, "market_stockpile")
-                .flatMap(com.warroom.parser.Clausewitz::obj)
-                .orElse(null);
-        if (stockObj == null) return java.util.List.of();
-
-        var equipsObj = com.warroom.parser.Clausewitz.path(stockObj, "equipments")
-                .flatMap(com.warroom.parser.Clausewitz::obj)
-                .orElse(null);
-        if (equipsObj == null) return java.util.List.of();
-
-        java.util.Map<String, Double> totals = new java.util.HashMap<>();
-
-        var eqVal = equipsObj.map().get("equipment");
-        for (var eqEntry : com.warroom.parser.Clausewitz.asObjList(eqVal)) {
-            String eqId = extractEqIdFromEquipmentEntry(eqEntry);
-            Double amt = extractAmountFromEntry(eqEntry);
-            if (eqId != null && amt != null && amt > 0) {
-                totals.merge(eqId, amt, Double::sum);
-            }
-        }
-
-        java.util.List<com.warroom.model.EquipmentAmount> list = new java.util.ArrayList<>();
+        List<EquipmentAmount> list = new ArrayList<>();
         for (var e : totals.entrySet()) {
             String id = e.getKey();
             double amt = e.getValue();
             String name = equipmentIdToName.getOrDefault(id, "equipment_id_" + id);
-            list.add(new com.warroom.model.EquipmentAmount(name, amt));
+            list.add(new EquipmentAmount(name, amt));
         }
 
         list.sort((a, b) -> Double.compare(b.amount(), a.amount()));
@@ -207,27 +151,21 @@ public final class CountryMapper {
         return list;
     }
 
-    private static Double extractAmountFromEntry(ClausewitzParser.ObjVal obj) {
-        var v = obj.map().get("amount");
-        if (v instanceof ClausewitzParser.NumVal nv) return nv.v();
-        return null;
+    private static String formatId(double id) {
+        // Ids are whole numbers; skip the formatter, which dominated per-row allocation.
+        if (id == (long) id && Math.abs(id) < 1e15 && Double.doubleToRawLongBits(id) != Long.MIN_VALUE) {
+            return Long.toString((long) id);
+        }
+        return String.format(Locale.US, "%.0f", id);
     }
 
-    private static String extractEqIdFromEquipmentEntry(ClausewitzParser.ObjVal obj) {
-        // entry looks like: id={ id=123 type=70 }
-        var idBlock = obj.map().get("id");
-        if (!(idBlock instanceof ClausewitzParser.ObjVal idObj)) return null;
-
-        var typeV = idObj.map().get("type");
-        var idV = idObj.map().get("id");
-
-        if (!(typeV instanceof ClausewitzParser.NumVal tnv)) return null;
-        if ((int) tnv.v() != 70) return null;
-
-        if (idV instanceof ClausewitzParser.NumVal inv) {
-            return String.format(java.util.Locale.US, "%.0f", inv.v());
-        }
-        return null;
+    private static Map<String, Integer> mergeCounts(Map<String, Integer> a, Map<String, Integer> b) {
+        b.forEach((k, v) -> a.merge(k, v, Integer::sum));
+        return a;
     }
 
+    private static Map<String, Double> mergeTotals(Map<String, Double> a, Map<String, Double> b) {
+        b.forEach((k, v) -> a.merge(k, v, Double::sum));
+        return a;
+    }
 }
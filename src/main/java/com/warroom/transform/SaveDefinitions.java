@@ -0,0 +1,139 @@
+package com.warroom.transform;
+
+import com.warroom.index.SaveIndex;
+import com.warroom.parser.Clausewitz;
+import com.warroom.parser.ClausewitzParser;
+import com.warroom.parser.ClausewitzParser.ListVal;
+import com.warroom.parser.ClausewitzParser.NumVal;
+import com.warroom.parser.ClausewitzParser.ObjVal;
+import com.warroom.parser.ClausewitzParser.Value;
+import com.warroom.parser.Projection;
+import com.warroom.parser.SaveFormat;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Save-wide data that country mapping depends on: the header values and the id-to-name maps of
+ * division templates and equipment.
+ */
+public final class SaveDefinitions {
+
+    public record Header(String player, String ideology, String date) {}
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private SaveDefinitions() {}
+
+    /**
+     * Header values read from the top-level gaps between the indexed blocks, so none of the
+     * large blocks is scanned.
+     */
+    public static Header header(ByteBuffer data, SaveIndex index) {
+        return header(new ClausewitzParser(index.format().tokens(index.topLevelGaps(data)))
+                .parseRoot(Projection.of("player", "ideology", "date")), index.format());
+    }
+
+    private static Header header(ObjVal root, SaveFormat format) {
+        return new Header(
+                Clausewitz.get(root, "player").flatMap(Clausewitz::str).orElse(null),
+                Clausewitz.get(root, "ideology").flatMap(Clausewitz::str).orElse(null),
+                Clausewitz.get(root, "date").flatMap(v -> date(v, format)).orElse(null));
+    }
+
+    /**
+     * Only binary saves encode the date as a number; text saves write it as a dotted word.
+     */
+    private static Optional<String> date(Value v, SaveFormat format) {
+        return format == SaveFormat.BINARY && v instanceof NumVal n ? Optional.of(binaryDate((long) n.v())) : Clausewitz.str(v);
+    }
+
+    /**
+     * Binary saves store dates as hours since the start of year -5000, on the game's calendar of
+     * 365-day years without leap days.
+     */
+    private static String binaryDate(long hours) {
+        int hour = (int) (hours % 24);
+        long days = hours / 24;
+        int dayOfYear = (int) (days % 365);
+        long year = days / 365 - 5000;
+
+        int month = 0;
+        while (dayOfYear >= DAYS_IN_MONTH[month]) dayOfYear -= DAYS_IN_MONTH[month++];
+        return year + "." + (month + 1) + "." + (dayOfYear + 1) + "." + hour;
+    }
+
+    public static Map<String, String> divisionTemplateNames(ByteBuffer data, SaveIndex index) {
+        var snippet = topLevelSnippet(data, index, "division_templates");
+        if (snippet == null) return Map.of();
+
+        var root = new ClausewitzParser(index.format().tokens(snippet)).parseRoot();
+
+        var divTemps = Clausewitz.get(root, "division_templates")
+                .flatMap(Clausewitz::obj)
+                .orElse(null);
+        if (divTemps == null) return Map.of();
+
+        var v = divTemps.map().get("division_template");
+        if (v == null) return Map.of();
+
+        Map<String, String> out = new HashMap<>();
+
+        if (v instanceof ObjVal one) {
+            addTemplateFromObj(one, out);
+        } else if (v instanceof ListVal many) {
+            for (var item : many.list()) {
+                if (item instanceof ObjVal obj) {
+                    addTemplateFromObj(obj, out);
+                }
+            }
+        }
+        return out;
+    }
+
+    public static Map<String, String> equipmentIdToName(ByteBuffer data, SaveIndex index) {
+        var snippet = topLevelSnippet(data, index, "equipments");
+        if (snippet == null) return Map.of();
+
+        var root = new ClausewitzParser(index.format().tokens(snippet)).parseRoot();
+
+        var eqObj = Clausewitz.get(root, "equipments")
+                .flatMap(Clausewitz::obj)
+                .orElse(null);
+
+        if (eqObj == null) return Map.of();
+
+        Map<String, String> out = new HashMap<>();
+        for (var e : eqObj.map().entrySet()) {
+            String eqName = e.getKey();
+            if (!(e.getValue() instanceof ObjVal defObj)) continue;
+
+            String id = extractIdFromIdBlock(defObj.map().get("id")); // id={ id=123 type=70 }
+            if (id != null) out.put(id, eqName);
+        }
+        return out;
+    }
+
+    private static ByteBuffer topLevelSnippet(ByteBuffer data, SaveIndex index, String key) {
+        var block = index.topLevel(key);
+        return block == null ? null : SaveIndex.slice(data, block);
+    }
+
+    private static void addTemplateFromObj(ObjVal templateObj, Map<String, String> out) {
+        String name = Clausewitz.get(templateObj, "name").flatMap(Clausewitz::str).orElse(null);
+        String id = extractIdFromIdBlock(templateObj.map().get("id")); // id={ id=1 type=52 }
+        if (id != null && name != null) out.put(id, name);
+    }
+
+    private static String extractIdFromIdBlock(Value v) {
+        if (!(v instanceof ObjVal obj)) return null;
+        var inner = obj.map().get("id");
+        if (inner instanceof NumVal nv) {
+            return String.format(Locale.US, "%.0f", nv.v());
+        }
+        return null;
+    }
+}
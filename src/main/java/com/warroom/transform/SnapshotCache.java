@@ -0,0 +1,112 @@
+package com.warroom.transform;
+
+import com.warroom.model.CountrySnapshot;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of mapped countries, keyed by the save's content hash and the country tag.
+ * Keying on content rather than on the file means that re-opening the same save still hits,
+ * while an autosave that overwrote the file misses.
+ *
+ * <p>All methods are thread-safe. A loader runs outside the lock, so two threads that miss on
+ * the same key may both load it; the last result wins.
+ */
+public final class SnapshotCache {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private record Key(long contentHash, String tag) {}
+
+    private final int capacity;
+    private final Map<Key, CountrySnapshot> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    public SnapshotCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SnapshotCache(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CountrySnapshot> eldest) {
+                return size() > SnapshotCache.this.capacity;
+            }
+        };
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the cached snapshot, or null; counts as a hit or a miss.
+     */
+    public synchronized CountrySnapshot get(long contentHash, String tag) {
+        CountrySnapshot snap = entries.get(new Key(contentHash, tag));
+        if (snap != null) hits++;
+        else misses++;
+        return snap;
+    }
+
+    public synchronized void put(long contentHash, CountrySnapshot snapshot) {
+        if (snapshot == null || snapshot.tag() == null) return;
+        entries.put(new Key(contentHash, snapshot.tag()), snapshot);
+    }
+
+    public void putAll(long contentHash, Map<String, CountrySnapshot> snapshots) {
+        for (CountrySnapshot snap : snapshots.values()) put(contentHash, snap);
+    }
+
+    /**
+     * Cached snapshot for the key, otherwise the loader's result, which is cached unless it is null.
+     */
+    public CountrySnapshot get(long contentHash, String tag, Supplier<CountrySnapshot> loader) {
+        CountrySnapshot snap = get(contentHash, tag);
+        if (snap != null) return snap;
+
+        snap = loader.get();
+        put(contentHash, snap);
+        return snap;
+    }
+
+    /**
+     * Every cached snapshot of one save, by tag, without touching recency or the counters.
+     */
+    public synchronized Map<String, CountrySnapshot> snapshots(long contentHash) {
+        Map<String, CountrySnapshot> out = new TreeMap<>();
+        for (var e : entries.entrySet()) {
+            if (e.getKey().contentHash() == contentHash) out.put(e.getKey().tag(), e.getValue());
+        }
+        return out;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "snapshot cache: %d/%d entries, hits=%d misses=%d",
+                entries.size(), capacity, hits, misses);
+    }
+}
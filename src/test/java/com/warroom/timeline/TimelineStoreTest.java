@@ -0,0 +1,127 @@
+package com.warroom.timeline;
+
+import com.warroom.model.CountrySnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimelineStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendedPointsAreQueryableAndSurviveReopen() throws IOException {
+        try (TimelineStore store = TimelineStore.open(dir)) {
+            store.append("a.hoi4", 10, 100, GameDate.parse("1936.1.1.12"), Map.of("GER", country("GER", 30.0)));
+            store.append("b.hoi4", 20, 200, GameDate.parse("1937.1.1.12"),
+                    Map.of("GER", country("GER", 40.0), "ENG", country("ENG", 25.0)));
+
+            assertEquals(List.of(sample("1936.1.1.12", 30), sample("1937.1.1.12", 40)),
+                    store.series("GER", Metric.CIVILIAN_FACTORIES));
+            assertEquals(List.of(sample("1937.1.1.12", 25)), store.series("ENG", Metric.CIVILIAN_FACTORIES));
+        }
+
+        try (TimelineStore store = TimelineStore.open(dir)) {
+            assertEquals(2, store.points().size());
+            assertTrue(store.contains("b.hoi4", 20, 200));
+            assertFalse(store.contains("b.hoi4", 20, 201));
+            assertEquals(List.of(sample("1936.1.1.12", 30), sample("1937.1.1.12", 40)),
+                    store.series("GER", Metric.CIVILIAN_FACTORIES));
+        }
+    }
+
+    @Test
+    void seriesHonoursDateBoundsAndSkipsMissingValues() throws IOException {
+        try (TimelineStore store = TimelineStore.open(dir)) {
+            store.append("a.hoi4", 1, 1, GameDate.parse("1936.1.1"), Map.of("GER", country("GER", 30.0)));
+            store.append("b.hoi4", 1, 2, GameDate.parse("1938.1.1"), Map.of("GER", country("GER", null)));
+            store.append("c.hoi4", 1, 3, GameDate.parse("1940.1.1"), Map.of("GER", country("GER", 50.0)));
+
+            assertEquals(List.of(sample("1936.1.1", 30), sample("1940.1.1", 50)),
+                    store.series("GER", Metric.CIVILIAN_FACTORIES));
+            assertEquals(List.of(sample("1940.1.1", 50)),
+                    store.series("GER", Metric.CIVILIAN_FACTORIES, GameDate.startOf(1937), null));
+            assertEquals(List.of(sample("1936.1.1", 30)),
+                    store.series("GER", Metric.CIVILIAN_FACTORIES, null, GameDate.endOf(1939)));
+            assertEquals(List.of(), store.series("SOV", Metric.CIVILIAN_FACTORIES));
+        }
+    }
+
+    @Test
+    void reopenDropsTornPointRecord() throws IOException {
+        try (TimelineStore store = TimelineStore.open(dir)) {
+            store.append("a.hoi4", 1, 1, GameDate.parse("1936.1.1"), Map.of("GER", country("GER", 30.0)));
+            store.append("b.hoi4", 1, 2, GameDate.parse("1937.1.1"), Map.of("GER", country("GER", 40.0)));
+        }
+        Path points = dir.resolve("points.log");
+        truncateBy(points, 3);
+
+        try (TimelineStore store = TimelineStore.open(dir)) {
+            assertEquals(1, store.points().size());
+            assertEquals(List.of(sample("1936.1.1", 30)), store.series("GER", Metric.CIVILIAN_FACTORIES));
+
+            store.append("b.hoi4", 1, 2, GameDate.parse("1937.1.1"), Map.of("GER", country("GER", 45.0)));
+        }
+        try (TimelineStore store = TimelineStore.open(dir)) {
+            assertEquals(List.of(sample("1936.1.1", 30), sample("1937.1.1", 45)),
+                    store.series("GER", Metric.CIVILIAN_FACTORIES));
+        }
+    }
+
+    @Test
+    void reopenCutsColumnBytesOfUncommittedPoint() throws IOException {
+        try (TimelineStore store = TimelineStore.open(dir)) {
+            store.append("a.hoi4", 1, 1, GameDate.parse("1936.1.1"), Map.of("GER", country("GER", 30.0)));
+        }
+        // A crash after the columns were written but before the point record.
+        Path column = dir.resolve("civilian_factories.f64");
+        Files.write(column, new byte[13], StandardOpenOption.APPEND);
+
+        try (TimelineStore store = TimelineStore.open(dir)) {
+            assertEquals(Double.BYTES, Files.size(column));
+            store.append("b.hoi4", 1, 2, GameDate.parse("1937.1.1"), Map.of("GER", country("GER", 40.0)));
+            assertEquals(List.of(sample("1936.1.1", 30), sample("1937.1.1", 40)),
+                    store.series("GER", Metric.CIVILIAN_FACTORIES));
+        }
+    }
+
+    @Test
+    void reopenRejectsColumnShorterThanCommittedPoints() throws IOException {
+        try (TimelineStore store = TimelineStore.open(dir)) {
+            store.append("a.hoi4", 1, 1, GameDate.parse("1936.1.1"), Map.of("GER", country("GER", 30.0)));
+        }
+        truncateBy(dir.resolve("manpower.f64"), 1);
+
+        assertThrows(IOException.class, () -> TimelineStore.open(dir));
+    }
+
+    private static void truncateBy(Path file, long bytes) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - bytes);
+        }
+    }
+
+    private static TimelineStore.Sample sample(String date, double value) {
+        return new TimelineStore.Sample(GameDate.parse(date), value);
+    }
+
+    private static CountrySnapshot country(String tag, Double civilianFactories) {
+        return new CountrySnapshot(tag, "1936.1.1.12", "neutrality", "party",
+                1000.0, civilianFactories, 5.0, 2.0,
+                50.0, 0.5, 0.3, 100.0, 3.0, 64.0, Boolean.TRUE,
+                Map.of(), List.of());
+    }
+}